@@ -0,0 +1,86 @@
+package com.swamp_portal.webapp.bench;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.swamp_portal.webapp.data_format.Report;
+import com.swamp_portal.webapp.data_format.ReportAggregationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the ingest worker does per report: plan merge ({@code ingestReport}) and the rolling plan/history
+ * deviation ({@code applyAvgDeviationFromReport}, which replaced {@code computeAvgForRole}).
+ * <p>
+ * Reports go round the fleet; each role has {@code SHIFTS} bound reports, one sample apart, used in turn.
+ * After the first pass they repeat what the service already holds, as devices re-sending their plan do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationBenchmark {
+    private static final int SHIFTS = 16;
+
+    /** Distinct roles reporting. */
+    @Param({"3", "30"})
+    public int fleet;
+
+    /** Samples per plan and history. */
+    @Param({"100", "1000"})
+    public int points;
+
+    private ReportAggregationService svc;
+    private Report[] reports;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        var mapper = BenchData.mapper();
+        ObjectReader reader = mapper.readerFor(Report.class);
+        double now = BenchData.nowSeconds();
+        reports = new Report[fleet * SHIFTS];
+        for (int s = 0; s < SHIFTS; s++) {
+            for (int r = 0; r < fleet; r++) {
+                double sent = now + s * BenchData.STEP;
+                // plans start in the future so nothing expires during the run
+                byte[] json = BenchData.reportJson(mapper, "sub" + r, r, points, sent + 600, sent);
+                reports[s * fleet + r] = reader.readValue(json);
+            }
+        }
+        svc = new ReportAggregationService(new SimpleMeterRegistry(), 60, 5, 2);
+        for (int r = 0; r < fleet; r++) ingest(reports[r]);
+    }
+
+    @Benchmark
+    public void ingestReport() {
+        svc.ingestReport(reports[next++ % reports.length]);
+    }
+
+    @Benchmark
+    public void applyDeviation() {
+        svc.applyAvgDeviationFromReport(reports[next++ % reports.length]);
+    }
+
+    @Benchmark
+    public void ingestAndDeviation() {
+        ingest(reports[next++ % reports.length]);
+    }
+
+    private void ingest(Report r) {
+        svc.ingestReport(r);
+        svc.applyAvgDeviationFromReport(r);
+    }
+}
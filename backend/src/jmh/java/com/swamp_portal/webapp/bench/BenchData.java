@@ -0,0 +1,75 @@
+package com.swamp_portal.webapp.bench;
+
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Synthetic reports and plans in the wire format the ingest endpoints receive. */
+final class BenchData {
+    /** Sample spacing of generated plans and histories, seconds. */
+    static final double STEP = 0.1;
+
+    private BenchData() {}
+
+    /** Same parser setup as spring.jackson.parser.use-fast-double-parser gives the app. */
+    static ObjectMapper mapper() {
+        return JsonMapper.builder().enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER).build();
+    }
+
+    static double nowSeconds() {
+        return System.currentTimeMillis() / 1000.0;
+    }
+
+    /**
+     * One report for {@code role}: a plan of {@code points} samples starting at {@code planStart} and a history
+     * of the same length ending at {@code sentTime}, off the plan by a few centimetres. {@code lane} moves the
+     * track sideways by 100 m, so a fleet does not sit in one proximity warning.
+     */
+    static byte[] reportJson(ObjectMapper mapper, String role, int lane, int points, double planStart, double sentTime)
+            throws Exception {
+        List<Map<String, Object>> plan = new ArrayList<>(points), hist = new ArrayList<>(points);
+        double y0 = lane * 100.0;
+        for (int i = 0; i < points; i++) {
+            double t = planStart + i * STEP;
+            plan.add(Map.of("t", t, "x", i * 1.5, "y", y0 + i * 0.5, "z", -2.0));
+            double h = sentTime - (points - 1 - i) * STEP;
+            hist.add(Map.of("t", h, "x", i * 1.5 + 0.02, "y", y0 + i * 0.5 - 0.01, "z", -2.01));
+        }
+        Map<String, Object> report = new HashMap<>();
+        report.put("report_id", 1);
+        report.put("identity_role", role);
+        report.put("snapshot_sent_time", sentTime);
+        report.put("sub0_role", role);
+        report.put("sub0_plan", plan);
+        report.put("sub0_history", hist);
+        report.put("report_stats", Map.of(role, 3));
+        return mapper.writeValueAsBytes(report);
+    }
+
+    /** A plan message with {@code points} oriented poses in each of its three blocks. */
+    static byte[] planJson(ObjectMapper mapper, int points, long stampSec) throws Exception {
+        Map<String, Object> plan = new HashMap<>();
+        for (String block : List.of("mid_plan", "sub1_plan", "sub2_plan")) {
+            List<Map<String, Object>> poses = new ArrayList<>(points);
+            for (int i = 0; i < points; i++) {
+                long nanos = (long) (i * STEP * 1e9);
+                poses.add(Map.of(
+                        "header", header(stampSec + nanos / 1_000_000_000L, (int) (nanos % 1_000_000_000L)),
+                        "pose", Map.of(
+                                "position", Map.of("x", i * 1.5, "y", i * 0.5, "z", -2.0),
+                                "orientation", Map.of("x", 0.0, "y", 0.0, "z", 0.383, "w", 0.924))));
+            }
+            plan.put(block, Map.of("header", header(stampSec, 0), "paths", List.of(Map.of("poses", poses))));
+        }
+        return mapper.writeValueAsBytes(plan);
+    }
+
+    private static Map<String, Object> header(long sec, int nanosec) {
+        return Map.of("stamp", Map.of("sec", sec, "nanosec", nanosec), "frame_id", "map");
+    }
+}
@@ -0,0 +1,58 @@
+package com.swamp_portal.webapp.bench;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.swamp_portal.webapp.data_format.Plan;
+import com.swamp_portal.webapp.data_format.Report;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Request body binding for /iot/report and /iot/plan, as the controllers do it (bytes to objects). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BindingBenchmark {
+
+    /** Samples per plan (and per history, for reports). */
+    @Param({"100", "1000"})
+    public int points;
+
+    private ObjectReader reportReader;
+    private ObjectReader planReader;
+    private byte[] report;
+    private byte[] plan;
+
+    @Setup
+    public void setup() throws Exception {
+        var mapper = BenchData.mapper();
+        reportReader = mapper.readerFor(Report.class);
+        planReader = mapper.readerFor(Plan.class);
+        double now = BenchData.nowSeconds();
+        report = BenchData.reportJson(mapper, "sub0", 0, points, now, now);
+        plan = BenchData.planJson(mapper, points, (long) now);
+    }
+
+    @Benchmark
+    public Report bindReport() throws IOException {
+        return reportReader.readValue(report);
+    }
+
+    @Benchmark
+    public Plan bindPlan() throws IOException {
+        return planReader.readValue(plan);
+    }
+}
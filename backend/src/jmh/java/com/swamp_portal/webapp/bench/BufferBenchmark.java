@@ -0,0 +1,131 @@
+package com.swamp_portal.webapp.bench;
+
+import com.swamp_portal.webapp.data_format.ExpiringBuffer;
+import com.swamp_portal.webapp.data_format.TrajectoryStore;
+import com.swamp_portal.webapp.data_format.TravelPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plan buffers: the object-per-sample {@link ExpiringBuffer} against the columnar {@link TrajectoryStore}
+ * that replaced it on the ingest path. All samples are in the future, so nothing expires during the run.
+ * <ul>
+ *   <li>append: each call adds the next {@code points} samples; the buffer starts over after {@code BATCHES}
+ *       calls so it stays bounded (the restart is part of the measured cost, amortized).</li>
+ *   <li>resend (store only): the same plan shifted by one sample, used in turn; after the first pass every
+ *       batch overlaps what the store holds, as with devices re-sending their plan. {@link ExpiringBuffer}
+ *       keeps duplicate timestamps, so it has no steady state here.</li>
+ *   <li>snapshot: a view of a buffer holding {@code points} samples.</li>
+ *   <li>add: one sample a second in the past, which expires the one before.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BufferBenchmark {
+    private static final int BATCHES = 64;
+
+    /** Samples per plan batch. */
+    @Param({"100", "1000"})
+    public int points;
+
+    private final List<List<TravelPoint>> pointBatches = new ArrayList<>(BATCHES);  // consecutive
+    private final List<TrajectoryStore.Batch> columnBatches = new ArrayList<>(BATCHES); // consecutive
+    private final List<TrajectoryStore.Batch> resendBatches = new ArrayList<>(BATCHES); // one sample apart
+    private ExpiringBuffer<TravelPoint> buffer;
+    private ExpiringBuffer<TravelPoint> live;
+    private TrajectoryStore store;
+    private int next;
+    private long lastAdd;
+
+    @Setup
+    public void setup() {
+        long base = TrajectoryStore.epochNanos(Instant.now().plusSeconds(3600));
+        long step = (long) (BenchData.STEP * 1e9);
+        for (int b = 0; b < BATCHES; b++) {
+            List<TravelPoint> pts = new ArrayList<>(points);
+            TrajectoryStore.Batch cols = new TrajectoryStore.Batch(points);
+            TrajectoryStore.Batch resend = new TrajectoryStore.Batch(points);
+            for (int i = 0; i < points; i++) {
+                long t = base + ((long) b * points + i) * step;
+                pts.add(new TravelPoint(Instant.ofEpochSecond(0, t), i * 1.5, i * 0.5, -2.0, null, null, null, null));
+                cols.add(t, i * 1.5, i * 0.5, -2.0);
+                resend.add(base + (b + i) * step, i * 1.5, i * 0.5, -2.0);
+            }
+            pointBatches.add(pts);
+            columnBatches.add(cols);
+            resendBatches.add(resend);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        buffer = new ExpiringBuffer<>();
+        buffer.addAll(pointBatches.get(0));
+        live = new ExpiringBuffer<>();
+        store = new TrajectoryStore();
+        store.merge(columnBatches.get(0), nowNanos());
+        next = 1;
+    }
+
+    @Benchmark
+    public int expiringBufferAddAll() {
+        int b = next++ % BATCHES;
+        if (b == 0) buffer.clear();
+        buffer.addAll(pointBatches.get(b));
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int trajectoryStoreAppend() {
+        int b = next++ % BATCHES;
+        if (b == 0) store = new TrajectoryStore();
+        store.merge(columnBatches.get(b), nowNanos());
+        return store.size();
+    }
+
+    @Benchmark
+    public int trajectoryStoreResend() {
+        store.merge(resendBatches.get(next++ % BATCHES), nowNanos());
+        return store.size();
+    }
+
+    @Benchmark
+    public List<TravelPoint> expiringBufferSnapshot() {
+        return buffer.snapshot();
+    }
+
+    @Benchmark
+    public TrajectoryStore.View trajectoryStoreSnapshot() {
+        return store.snapshot();
+    }
+
+    @Benchmark
+    public int expiringBufferAdd() {
+        lastAdd = Math.max(lastAdd + 1, nowNanos() - 1_000_000_000L);
+        live.add(new TravelPoint(Instant.ofEpochSecond(0, lastAdd), 1.0, 2.0, -2.0, null, null, null, null));
+        return live.size();
+    }
+
+    private static long nowNanos() {
+        return System.currentTimeMillis() * 1_000_000L;
+    }
+}
@@ -0,0 +1,123 @@
+package com.swamp_portal.webapp.bench;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.swamp_portal.webapp.data_format.PointSeries;
+import com.swamp_portal.webapp.data_format.Report;
+import com.swamp_portal.webapp.data_format.ReportAggregationService;
+import com.swamp_portal.webapp.data_format.TravelPoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One report end to end, binding + plan ingest + deviation, for the old {@code List<Point>} model against
+ * {@link PointSeries}. The figure that matters is bytes per report: run with {@code -prof gc} and read
+ * {@code gc.alloc.rate.norm} ({@code -Dbench.args="ReportAllocation -prof gc"}).
+ * <p>
+ * History samples sit at the plan's own timestamps, so the legacy exact-time lookup matches every one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportAllocationBenchmark {
+
+    /** Samples per plan and history. */
+    @Param({"200", "1000"})
+    public int points;
+
+    // the pre-PointSeries shape of Report's point arrays
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class LegacyReport {
+        @JsonProperty("snapshot_sent_time") public double snapshotSentTime;
+        @JsonProperty("sub0_role")          public String sub0Role;
+        @JsonProperty("sub0_plan")          public List<Report.Point> sub0Plan;
+        @JsonProperty("sub0_history")       public List<Report.Point> sub0History;
+    }
+
+    private byte[] json;
+    private ObjectReader legacyReader;
+    private ObjectReader reader;
+    private ReportAggregationService svc;
+
+    @Setup
+    public void setup() throws Exception {
+        ObjectMapper mapper = BenchData.mapper();
+        json = reportJson(mapper, points);
+        legacyReader = mapper.readerFor(LegacyReport.class);
+        reader = mapper.readerFor(Report.class);
+        svc = new ReportAggregationService(new SimpleMeterRegistry(), 60, 5, 2);
+    }
+
+    @Benchmark
+    public double listOfPoints() throws IOException {
+        return legacyIngest(legacyReader.readValue(json));
+    }
+
+    @Benchmark
+    public Report pointSeries() throws IOException {
+        Report r = reader.readValue(json);
+        svc.ingestReport(r);
+        svc.applyAvgDeviationFromReport(r);
+        return r;
+    }
+
+    // what handleReportRole + computeAvgForRole did with List<Point>
+    private static double legacyIngest(LegacyReport r) {
+        List<TravelPoint> pts = new ArrayList<>(r.sub0Plan.size());
+        for (Report.Point p : r.sub0Plan) pts.add(new TravelPoint(p.getTimestamp(), p.getX(), p.getY(), p.getZ(), null, null, null, null));
+
+        double start = r.snapshotSentTime - 60.0;
+        Map<Double, Report.Point> planByT = new HashMap<>();
+        for (Report.Point p : r.sub0Plan) if (p.getT() >= start && p.getT() <= r.snapshotSentTime) planByT.put(p.getT(), p);
+        double sum = 0.0; int n = 0;
+        for (Report.Point h : r.sub0History) {
+            Report.Point p = planByT.get(h.getT());
+            if (p != null) {
+                double dx = p.getX() - h.getX(), dy = p.getY() - h.getY(), dz = p.getZ() - h.getZ();
+                sum += Math.sqrt(dx*dx + dy*dy + dz*dz);
+                n++;
+            }
+        }
+        return ((n == 0) ? 0.0 : sum / n) + pts.size();
+    }
+
+    private static byte[] reportJson(ObjectMapper mapper, int points) throws Exception {
+        double now = Math.floor(BenchData.nowSeconds());
+        List<Map<String, Object>> plan = new ArrayList<>(points), hist = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            double t = now - 30 + i * BenchData.STEP;
+            plan.add(Map.of("t", t, "x", i * 1.5, "y", i * 0.5, "z", -2.0));
+            hist.add(Map.of("t", t, "x", i * 1.5 + 0.2, "y", i * 0.5 - 0.1, "z", -2.1));
+        }
+        Map<String, Object> report = new HashMap<>();
+        report.put("report_id", 1);
+        report.put("snapshot_sent_time", now);
+        report.put("sub0_role", "sub0");
+        report.put("sub0_plan", plan);
+        report.put("sub0_history", hist);
+        report.put("report_stats", Map.of("sub0", 3));
+        return mapper.writeValueAsBytes(report);
+    }
+}
@@ -0,0 +1,83 @@
+package com.swamp_portal.webapp.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.swamp_portal.webapp.data_format.Report;
+import com.swamp_portal.webapp.data_format.ReportAggregationService;
+import com.swamp_portal.webapp.data_format.StreamState;
+import com.swamp_portal.webapp.stream.SseFrame;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one full-state frame, the part of a publish that grows with fleet and plan size: capturing the
+ * state, building the frontend shape ({@code buildStreamdataWithAvg} / {@code buildStreamdata}) and
+ * serializing it to the SSE frame bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamFrameBenchmark {
+
+    /** Distinct roles in the state. */
+    @Param({"3", "30"})
+    public int fleet;
+
+    /** Samples per plan. */
+    @Param({"100", "1000"})
+    public int points;
+
+    /** Column-packed travel plans ({@code format=packed}) instead of point objects. */
+    @Param({"false", "true"})
+    public boolean packed;
+
+    private ObjectMapper mapper;
+    private ReportAggregationService svc;
+    private StreamState state;
+    private long version;
+
+    @Setup
+    public void setup() throws Exception {
+        mapper = BenchData.mapper();
+        ObjectReader reader = mapper.readerFor(Report.class);
+        double now = BenchData.nowSeconds();
+        svc = new ReportAggregationService(new SimpleMeterRegistry(), 60, 5, 2);
+        for (int r = 0; r < fleet; r++) {
+            Report report = reader.readValue(BenchData.reportJson(mapper, "sub" + r, r, points, now + 600, now));
+            svc.ingestReport(report);
+            svc.applyAvgDeviationFromReport(report);
+        }
+        state = svc.captureState();
+    }
+
+    @Benchmark
+    public Map<String, Object> buildStreamdataWithAvg() {
+        return svc.buildStreamdataWithAvg();
+    }
+
+    @Benchmark
+    public Map<String, Object> buildStreamdata() {
+        return svc.buildStreamdata(state, packed, 0);
+    }
+
+    @Benchmark
+    public byte[] encodeFrame() {
+        return SseFrame.of(mapper, "message", String.valueOf(++version), svc.buildStreamdata(state, packed, 0)).bytes();
+    }
+}
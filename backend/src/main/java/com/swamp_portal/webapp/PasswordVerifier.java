@@ -0,0 +1,170 @@
+package com.swamp_portal.webapp;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs bcrypt off the request threads, on a fixed pool of {@code auth.hash.threads} workers with at most
+ * {@code auth.hash.queue} waiting jobs. Admission is decided up front: a caller already holding
+ * {@code auth.hash.max-per-ip} in-flight checks, or a username with {@code auth.hash.max-per-user}, gets
+ * 429; a full queue gets 503. Either way the request fails without burning any hashing CPU. A limit of 0
+ * turns that check off. The client IP is the request's remote address, which is only the real client when
+ * {@code server.forward-headers-strategy} resolves it behind a proxy.
+ * <p>
+ * Metrics: {@code swamp.auth.hash} (time per hash), {@code swamp.auth.hash.queue} and
+ * {@code swamp.auth.hash.active} (pool), {@code swamp.auth.hash.rejected} (refused before hashing).
+ */
+@Component
+public class PasswordVerifier {
+
+    /** Point-in-time pool and latency figures. */
+    public record Stats(int queued, int active, long completed, long rejected,
+                        double avgHashMillis, double maxHashMillis) {}
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final ThreadPoolExecutor pool;
+    private final int maxPerIp;
+    private final int maxPerUser;
+
+    // key -> jobs admitted and not yet finished
+    private final Map<String, Integer> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+    private final Timer hashTimer;
+    // a random password hashed at the configured cost; logins for unknown usernames are checked against it
+    private final String unknownUserHash;
+
+    public PasswordVerifier(@Value("${auth.bcrypt.strength:12}") int strength,
+                            @Value("${auth.hash.threads:0}") int threads,
+                            @Value("${auth.hash.queue:64}") int queue,
+                            @Value("${auth.hash.max-per-ip:4}") int maxPerIp,
+                            @Value("${auth.hash.max-per-user:2}") int maxPerUser,
+                            MeterRegistry meters) {
+        this.bcrypt = new BCryptPasswordEncoder(strength);
+        // default: half the cores, so a login burst cannot take the whole CPU from streaming and ingest
+        int n = (threads > 0) ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, queue)), r -> {
+            Thread t = new Thread(r, "bcrypt-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.maxPerIp = Math.max(0, maxPerIp);
+        this.maxPerUser = Math.max(0, maxPerUser);
+        this.hashTimer = Timer.builder("swamp.auth.hash").description("bcrypt time per password check or hash")
+                .publishPercentileHistogram().register(meters);
+        Gauge.builder("swamp.auth.hash.queue", pool, p -> p.getQueue().size())
+                .description("Hash jobs waiting for a worker").register(meters);
+        Gauge.builder("swamp.auth.hash.active", pool, ThreadPoolExecutor::getActiveCount).register(meters);
+        FunctionCounter.builder("swamp.auth.hash.rejected", rejected, LongAdder::sum)
+                .description("Login and signup hashes refused by admission or a full queue").register(meters);
+        this.unknownUserHash = bcrypt.encode(UUID.randomUUID().toString());
+    }
+
+    /** Whether {@code raw} matches {@code hash}, computed on the hashing pool. */
+    public CompletableFuture<Boolean> matches(String raw, String hash, String username, String clientIp) {
+        return submit(() -> bcrypt.matches(raw, hash), "ip:" + clientIp, maxPerIp, "user:" + username, maxPerUser);
+    }
+
+    /**
+     * Always false, but costs and is admitted like {@link #matches}, so a login for a username that does not
+     * exist takes as long as one with a wrong password and does not reveal which names are taken.
+     */
+    public CompletableFuture<Boolean> matchesUnknownUser(String raw, String username, String clientIp) {
+        return matches(raw, unknownUserHash, username, clientIp).thenApply(ok -> false);
+    }
+
+    /** Hashes a new password on the hashing pool. */
+    public CompletableFuture<String> encode(String raw, String clientIp) {
+        return submit(() -> bcrypt.encode(raw), "ip:" + clientIp, maxPerIp, null, 0);
+    }
+
+    public Stats stats() {
+        long n = hashes.sum();
+        return new Stats(pool.getQueue().size(), pool.getActiveCount(), pool.getCompletedTaskCount(), rejected.sum(),
+                (n == 0) ? 0.0 : hashNanos.sum() / 1e6 / n, maxHashNanos.get() / 1e6);
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work, String key1, int limit1, String key2, int limit2) {
+        if (!acquire(key1, limit1)) return reject(HttpStatus.TOO_MANY_REQUESTS, "Too many login attempts in progress");
+        if (key2 != null && !acquire(key2, limit2)) {
+            release(key1);
+            return reject(HttpStatus.TOO_MANY_REQUESTS, "Too many login attempts in progress");
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> timed(work), pool).whenComplete((v, e) -> {
+                release(key1);
+                if (key2 != null) release(key2);
+            });
+        } catch (RejectedExecutionException e) {
+            release(key1);
+            if (key2 != null) release(key2);
+            return reject(HttpStatus.SERVICE_UNAVAILABLE, "Login busy, try again shortly");
+        }
+    }
+
+    private <T> T timed(Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            long took = System.nanoTime() - start;
+            hashes.increment();
+            hashNanos.add(took);
+            maxHashNanos.accumulateAndGet(took, Math::max);
+            hashTimer.record(took, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean acquire(String key, int limit) {
+        if (limit <= 0) return true;
+        boolean[] admitted = {false};
+        inFlight.compute(key, (k, count) -> {
+            int n = (count == null) ? 0 : count;
+            if (n >= limit) return count;
+            admitted[0] = true;
+            return n + 1;
+        });
+        return admitted[0];
+    }
+
+    private void release(String key) {
+        if (key == null) return;
+        // drop idle counters so the map only holds keys with work in flight
+        inFlight.computeIfPresent(key, (k, count) -> (count <= 1) ? null : count - 1);
+    }
+
+    private <T> CompletableFuture<T> reject(HttpStatus status, String reason) {
+        rejected.increment();
+        return CompletableFuture.failedFuture(new ResponseStatusException(status, reason));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+}
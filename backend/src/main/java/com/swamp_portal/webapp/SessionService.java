@@ -1,33 +1,116 @@
 package com.swamp_portal.webapp;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.*;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseCookie;
 import org.springframework.stereotype.Service;
 
+/**
+ * Login sessions, carried in the {@code SESSION} cookie. Two modes ({@code session.mode}):
+ * <ul>
+ *   <li>{@code memory}: random tokens looked up in a bounded in-process map; a session ends after
+ *       {@code session.ttl-minutes}, or after {@code session.idle-minutes} without a request. Expired entries
+ *       are dropped by a background sweep every {@code session.sweep-seconds} (and on sight).</li>
+ *   <li>{@code signed}: the token itself is {@code user.expiry.HMAC-SHA256(user.expiry)}, so checking it is
+ *       CPU-only and works on any node sharing {@code session.secret}. There is no server state, so the idle
+ *       timeout does not apply and logout only clears the cookie.</li>
+ * </ul>
+ */
 @Service
 public class SessionService {
+    private static final Logger log = LoggerFactory.getLogger(SessionService.class);
+
     private static final String COOKIE_NAME = "SESSION";
-    private final Map<String,String> sessions = new ConcurrentHashMap<>();
-    // token -> username
+    private static final String HMAC = "HmacSHA256";
+
+    private record Session(String username, long expiresAt, long lastSeen) {}
+
+    private final boolean signed;
+    private final long ttlMillis;
+    private final long idleMillis;
+    private final int maxSessions;
+    private final byte[] secret;
+    private final ScheduledExecutorService sweeper;
+
+    // token -> session (memory mode)
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ThreadLocal<Mac> mac;
+
+    public SessionService(@Value("${session.mode:memory}") String mode,
+                          @Value("${session.ttl-minutes:720}") long ttlMinutes,
+                          @Value("${session.idle-minutes:60}") long idleMinutes,
+                          @Value("${session.max-sessions:10000}") int maxSessions,
+                          @Value("${session.sweep-seconds:60}") long sweepSeconds,
+                          @Value("${session.secret:}") String secret) {
+        this.signed = "signed".equalsIgnoreCase(mode);
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(Math.max(1, ttlMinutes));
+        this.idleMillis = (idleMinutes <= 0) ? Long.MAX_VALUE : TimeUnit.MINUTES.toMillis(idleMinutes);
+        this.maxSessions = Math.max(1, maxSessions);
+
+        if (signed && secret.isBlank()) {
+            // a random key would silently log everyone out on restart and fail on every other node
+            throw new IllegalStateException("session.mode=signed needs session.secret");
+        }
+        this.secret = secret.isBlank() ? randomKey() : secret.getBytes(StandardCharsets.UTF_8);
+        this.mac = ThreadLocal.withInitial(this::newMac);
+        newMac(); // fail at startup, not on the first login
+
+        if (signed) {
+            this.sweeper = null;
+        } else {
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "session-sweep");
+                t.setDaemon(true);
+                return t;
+            });
+            long every = Math.max(1, sweepSeconds);
+            sweeper.scheduleWithFixedDelay(this::sweep, every, every, TimeUnit.SECONDS);
+        }
+    }
 
-    public void createSession(HttpServletResponse res, String username) {
-        String token = UUID.randomUUID().toString();
-        sessions.put(token, username);
+    /**
+     * Starts a session for {@code username} and returns the cookie carrying it. The caller sends it as
+     * {@code Set-Cookie}, so this works from any thread, not just the one owning the servlet response.
+     */
+    public ResponseCookie createSession(String username) {
+        long now = System.currentTimeMillis();
+        String token;
+        if (signed) {
+            token = sign(username, now + ttlMillis);
+        } else {
+            if (sessions.size() >= maxSessions) makeRoom(now);
+            token = UUID.randomUUID().toString();
+            sessions.put(token, new Session(username, now + ttlMillis, now));
+        }
 
-        Cookie c = new Cookie(COOKIE_NAME, token);
-        c.setHttpOnly(true);
-        c.setPath("/");
-        // setSecure(true) in prod behind HTTPS
-        res.addCookie(c);
+        // .secure(true) in prod behind HTTPS
+        return ResponseCookie.from(COOKIE_NAME, token)
+                .httpOnly(true)
+                .path("/")
+                .maxAge(ttlMillis / 1000)
+                .build();
     }
 
     public String getUser(HttpServletRequest req) {
         if (req.getCookies() == null) return null;
         for (Cookie c : req.getCookies()) {
             if (COOKIE_NAME.equals(c.getName())) {
-                return sessions.get(c.getValue());
+                return signed ? verify(c.getValue()) : lookup(c.getValue());
             }
         }
         return null;
@@ -44,4 +127,92 @@ public class SessionService {
             }
         }
     }
+
+    /* ----------------- memory mode ----------------- */
+
+    private String lookup(String token) {
+        Session s = sessions.get(token);
+        if (s == null) return null;
+        long now = System.currentTimeMillis();
+        if (expired(s, now)) {
+            sessions.remove(token, s);
+            return null;
+        }
+        // only rewrite the entry when it moves the idle deadline noticeably
+        if (now - s.lastSeen() > 1000) sessions.replace(token, s, new Session(s.username(), s.expiresAt(), now));
+        return s.username();
+    }
+
+    private boolean expired(Session s, long now) {
+        return now >= s.expiresAt() || now - s.lastSeen() >= idleMillis;
+    }
+
+    void sweep() {
+        long now = System.currentTimeMillis();
+        sessions.entrySet().removeIf(e -> expired(e.getValue(), now));
+    }
+
+    /** At capacity: drop expired sessions, then the least recently used ones. */
+    private void makeRoom(long now) {
+        sweep();
+        int excess = sessions.size() - maxSessions + 1;
+        if (excess <= 0) return;
+        log.warn("Session limit {} reached, ending {} least recently used session(s)", maxSessions, excess);
+        sessions.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastSeen()))
+                .limit(excess)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(sessions::remove);
+    }
+
+    /* ----------------- signed mode ----------------- */
+
+    private String sign(String username, long expiresAt) {
+        Base64.Encoder b64 = Base64.getUrlEncoder().withoutPadding();
+        String body = b64.encodeToString(username.getBytes(StandardCharsets.UTF_8)) + "." + Long.toString(expiresAt, 36);
+        return body + "." + b64.encodeToString(mac(body));
+    }
+
+    /** The user of a well-formed, correctly signed and unexpired token; otherwise null. */
+    private String verify(String token) {
+        int dot2 = token.lastIndexOf('.');
+        int dot1 = (dot2 > 0) ? token.lastIndexOf('.', dot2 - 1) : -1;
+        if (dot1 <= 0) return null;
+        try {
+            String body = token.substring(0, dot2);
+            byte[] given = Base64.getUrlDecoder().decode(token.substring(dot2 + 1));
+            if (!MessageDigest.isEqual(mac(body), given)) return null;
+            long expiresAt = Long.parseLong(token.substring(dot1 + 1, dot2), 36);
+            if (System.currentTimeMillis() >= expiresAt) return null;
+            return new String(Base64.getUrlDecoder().decode(token.substring(0, dot1)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null; // bad base64 or number
+        }
+    }
+
+    private byte[] mac(String body) {
+        return mac.get().doFinal(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac m = Mac.getInstance(HMAC);
+            m.init(new SecretKeySpec(secret, HMAC));
+            return m;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise " + HMAC, e);
+        }
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (sweeper != null) sweeper.shutdownNow();
+    }
 }
@@ -0,0 +1,72 @@
+package com.swamp_portal.webapp.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM bus: messages go, as object references, to the other members of {@code stream.bus.local.group}
+ * in this JVM (several application contexts started side by side). A single node has no peers, so
+ * publishing is free.
+ */
+@Component
+@ConditionalOnProperty(name = "stream.bus.mode", havingValue = "local", matchIfMissing = true)
+public class LocalStreamBus implements StreamBus {
+    private static final Logger log = LoggerFactory.getLogger(LocalStreamBus.class);
+
+    private static final Map<String, Set<LocalStreamBus>> GROUPS = new ConcurrentHashMap<>();
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final String group;
+    private final List<Consumer<Message>> handlers = new CopyOnWriteArrayList<>();
+
+    public LocalStreamBus(@Value("${stream.bus.local.group:default}") String group) {
+        this.group = group;
+        GROUPS.computeIfAbsent(group, g -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(Kind kind, Object body) {
+        Message m = new Message(nodeId, kind, body);
+        for (LocalStreamBus member : GROUPS.getOrDefault(group, Set.of())) {
+            if (member != this) member.deliver(m);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Message> handler) {
+        handlers.add(handler);
+    }
+
+    private void deliver(Message m) {
+        for (Consumer<Message> handler : handlers) {
+            try {
+                handler.accept(m);
+            } catch (RuntimeException e) {
+                log.error("Stream bus handler failed ({})", m.kind(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Set<LocalStreamBus> members = GROUPS.get(group);
+        if (members != null) members.remove(this);
+    }
+}
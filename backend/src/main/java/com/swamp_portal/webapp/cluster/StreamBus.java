@@ -0,0 +1,37 @@
+package com.swamp_portal.webapp.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries ingest and admin pushes between the nodes of one deployment, so a report posted to any node
+ * reaches the dashboards connected to every node. Each node applies what it receives to its own
+ * aggregation state and encodes its own frames, so every frame is encoded once per node.
+ * <p>
+ * {@link #publish} goes to the other nodes only (the sender has already applied it locally) and must not
+ * block on the network. Selected with {@code stream.bus.mode}: {@code local} (default) or {@code tcp}.
+ */
+public interface StreamBus {
+
+    enum Kind {
+        /** one {@code Report} */
+        REPORT,
+        /** a {@code List<Report>} chunk of a batch upload */
+        REPORTS,
+        /** one {@code Plan} */
+        PLAN,
+        /** an admin payload that becomes the stream state */
+        STATE,
+        /** a one-off admin payload */
+        BROADCAST
+    }
+
+    record Message(String origin, Kind kind, Object body) {}
+
+    /** This node's id, the {@code origin} of everything it publishes. */
+    String nodeId();
+
+    void publish(Kind kind, Object body);
+
+    /** Registers a handler for messages from other nodes. */
+    void subscribe(Consumer<Message> handler);
+}
@@ -0,0 +1,355 @@
+package com.swamp_portal.webapp.cluster;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.swamp_portal.webapp.data_format.Plan;
+import com.swamp_portal.webapp.data_format.Report;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Socket bus for a static full mesh: every node listens on {@code stream.bus.tcp.bind}:{@code port}
+ * (loopback unless set to a private interface) and keeps one outbound connection to each of
+ * {@code stream.bus.tcp.peers} ({@code host:port,...}, the other nodes). Messages are not forwarded, so
+ * every node must list every other node.
+ * <p>
+ * A message is encoded once (CBOR) and the same bytes are queued for every peer; wire frames are
+ * {@code [int length][bytes][HMAC-SHA256 of bytes]} under the shared {@code stream.bus.tcp.secret}, and a
+ * connection that sends a frame with a bad MAC is closed before anything in it is applied. Each peer has a
+ * bounded queue drained by its own writer, which reconnects with backoff; the caller never blocks.
+ * <p>
+ * Delivery: messages reach a connected peer in publish order, at most once. When a peer's queue overflows,
+ * or a connection to it is lost, its queue is discarded and the next connection starts with a resync: the
+ * latest STATE, the latest report of each reporting role and the latest plan of each plan role this node
+ * published. Intermediate reports and one-off BROADCASTs are lost then; the current state is not. A resent
+ * report or plan may already have been applied; plans older than the one held are ignored by the receiver.
+ */
+@Component
+@ConditionalOnProperty(name = "stream.bus.mode", havingValue = "tcp")
+public class TcpStreamBus implements StreamBus {
+    private static final Logger log = LoggerFactory.getLogger(TcpStreamBus.class);
+
+    private static final int MAX_FRAME = 64 * 1024 * 1024;
+    private static final long MAX_BACKOFF_MS = 10_000;
+    private static final String HMAC = "HmacSHA256";
+    private static final int MAC_BYTES = 32;
+
+    /** Wire envelope; the body is CBOR of its own, decoded by kind. */
+    private record Envelope(String origin, Kind kind, byte[] body) {}
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final CBORMapper cbor = new CBORMapper();
+    private final ObjectReader reportList = cbor.readerForListOf(Report.class);
+    private final List<Consumer<Message>> handlers = new CopyOnWriteArrayList<>();
+    private final List<Peer> peers = new ArrayList<>();
+    private final ServerSocket server;
+    private final List<Socket> inbound = new CopyOnWriteArrayList<>();
+    private final SecretKeySpec key;
+    // what a resync resends: "state", "report:<identity role>" and "plan:<role>" -> latest published message
+    private final Map<String, Message> latest = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    public TcpStreamBus(@Value("${stream.bus.tcp.bind:127.0.0.1}") String bind,
+                        @Value("${stream.bus.tcp.port:7400}") int port,
+                        @Value("${stream.bus.tcp.peers:}") String peerList,
+                        @Value("${stream.bus.tcp.queue-capacity:4096}") int queueCapacity,
+                        @Value("${stream.bus.tcp.secret:}") String secret) throws IOException {
+        if (secret.isBlank()) throw new IllegalStateException("stream.bus.mode=tcp needs stream.bus.tcp.secret");
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC);
+        newMac(); // fail at startup, not on the first frame
+        this.server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(InetAddress.getByName(bind), port));
+        Thread.ofVirtual().name("bus-accept").start(this::acceptLoop);
+
+        for (String spec : peerList.split(",")) {
+            spec = spec.trim();
+            if (spec.isEmpty()) continue;
+            int colon = spec.lastIndexOf(':');
+            if (colon <= 0) throw new IllegalArgumentException("stream.bus.tcp.peers entry is not host:port: " + spec);
+            Peer peer = new Peer(spec.substring(0, colon), Integer.parseInt(spec.substring(colon + 1)), Math.max(1, queueCapacity));
+            peers.add(peer);
+            peer.writer = Thread.ofVirtual().name("bus-peer-" + spec).start(peer::writeLoop);
+        }
+        log.info("Stream bus listening on {} with {} peer(s)", server.getLocalSocketAddress(), peers.size());
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(Kind kind, Object body) {
+        if (peers.isEmpty()) return;
+        remember(kind, body);
+        byte[] frame = encode(kind, body);
+        if (frame == null) return;
+        for (Peer peer : peers) peer.offer(frame);
+    }
+
+    @Override
+    public void subscribe(Consumer<Message> handler) {
+        handlers.add(handler);
+    }
+
+    /** Keeps the latest message per resync key; everything else is not resent. */
+    @SuppressWarnings("unchecked")
+    private void remember(Kind kind, Object body) {
+        switch (kind) {
+            case STATE -> latest.put("state", new Message(nodeId, kind, body));
+            case REPORT -> rememberReport((Report) body);
+            case REPORTS -> ((List<Report>) body).forEach(this::rememberReport);
+            case PLAN -> {
+                Plan plan = (Plan) body;
+                Message m = new Message(nodeId, kind, plan);
+                if (plan.getMidPlan() != null) latest.put("plan:mid", m);
+                if (plan.getSub1Plan() != null) latest.put("plan:sub1", m);
+                if (plan.getSub2Plan() != null) latest.put("plan:sub2", m);
+            }
+            case BROADCAST -> { } // one-off
+        }
+    }
+
+    private void rememberReport(Report report) {
+        if (report != null) latest.put("report:" + report.getIdentityRole(), new Message(nodeId, Kind.REPORT, report));
+    }
+
+    /** CBOR envelope followed by its MAC; null if the body cannot be encoded. */
+    private byte[] encode(Kind kind, Object body) {
+        try {
+            byte[] bytes = cbor.writeValueAsBytes(new Envelope(nodeId, kind, cbor.writeValueAsBytes(body)));
+            byte[] frame = Arrays.copyOf(bytes, bytes.length + MAC_BYTES);
+            Mac mac = newMac();
+            mac.update(bytes);
+            mac.doFinal(frame, bytes.length);
+            return frame;
+        } catch (IOException | GeneralSecurityException e) {
+            log.error("Stream bus cannot encode {}", kind, e);
+            return null;
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac m = Mac.getInstance(HMAC);
+            m.init(key);
+            return m;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise " + HMAC, e);
+        }
+    }
+
+    /* ----------------- inbound ----------------- */
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                inbound.add(s);
+                Thread.ofVirtual().name("bus-in-" + s.getRemoteSocketAddress()).start(() -> readLoop(s));
+            } catch (IOException e) {
+                if (running) log.warn("Stream bus accept failed", e);
+            }
+        }
+    }
+
+    private void readLoop(Socket s) {
+        try (s; DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()))) {
+            Mac mac = newMac();
+            byte[] expected = new byte[MAC_BYTES];
+            while (running) {
+                int len = in.readInt();
+                if (len <= MAC_BYTES || len > MAX_FRAME) throw new IOException("Bad stream bus frame length " + len);
+                byte[] frame = new byte[len];
+                in.readFully(frame);
+                int body = len - MAC_BYTES;
+                mac.update(frame, 0, body);
+                mac.doFinal(expected, 0);
+                if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(frame, body, len))) {
+                    log.warn("Stream bus frame from {} failed authentication (stream.bus.tcp.secret differs?), closing",
+                            s.getRemoteSocketAddress());
+                    return;
+                }
+                deliver(Arrays.copyOf(frame, body));
+            }
+        } catch (GeneralSecurityException e) {
+            log.error("Stream bus cannot check frames from {}", s.getRemoteSocketAddress(), e);
+        } catch (EOFException e) {
+            // peer closed
+        } catch (IOException e) {
+            if (running) log.info("Stream bus connection from {} closed: {}", s.getRemoteSocketAddress(), e.toString());
+        } finally {
+            inbound.remove(s);
+        }
+    }
+
+    private void deliver(byte[] frame) {
+        Message m;
+        try {
+            Envelope env = cbor.readValue(frame, Envelope.class);
+            if (nodeId.equals(env.origin())) return; // we are in our own peer list
+            Object body = switch (env.kind()) {
+                case REPORT -> cbor.readValue(env.body(), Report.class);
+                case REPORTS -> reportList.readValue(env.body());
+                case PLAN -> cbor.readValue(env.body(), Plan.class);
+                case STATE, BROADCAST -> cbor.readValue(env.body(), Object.class);
+            };
+            m = new Message(env.origin(), env.kind(), body);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Skipping unreadable stream bus message", e);
+            return;
+        }
+        for (Consumer<Message> handler : handlers) {
+            try {
+                handler.accept(m);
+            } catch (RuntimeException e) {
+                log.error("Stream bus handler failed ({})", m.kind(), e);
+            }
+        }
+    }
+
+    /* ----------------- outbound ----------------- */
+
+    private final class Peer {
+        final String host;
+        final int port;
+        final BlockingQueue<byte[]> queue;
+        final AtomicBoolean resync = new AtomicBoolean();
+        final AtomicLong resyncs = new AtomicLong();
+        volatile Socket socket;
+        Thread writer;
+
+        Peer(String host, int port, int capacity) {
+            this.host = host;
+            this.port = port;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void offer(byte[] frame) {
+            if (queue.offer(frame)) return;
+            // full: the caller never waits on a peer; the backlog goes and the writer resends the latest state
+            queue.clear();
+            if (!resync.getAndSet(true) && resyncs.incrementAndGet() % 100 == 1) {
+                log.warn("Stream bus peer {}:{} is behind, resyncing from the latest state ({} resync(s) so far)",
+                        host, port, resyncs.get());
+            }
+        }
+
+        /** Discards the backlog and sends the latest message of every resync key instead. */
+        void writeResync(DataOutputStream out) throws IOException {
+            // cleared first: anything published from here on is queued behind the resync
+            queue.clear();
+            for (Message m : latest.values()) {
+                byte[] frame = encode(m.kind(), m.body());
+                if (frame == null) continue;
+                out.writeInt(frame.length);
+                out.write(frame);
+            }
+            out.flush();
+        }
+
+        void writeLoop() {
+            long backoff = 250;
+            while (running) {
+                boolean connected = false;
+                try (Socket s = new Socket()) {
+                    s.connect(new InetSocketAddress(host, port), 5000);
+                    s.setTcpNoDelay(true);
+                    socket = s;
+                    connected = true;
+                    log.info("Stream bus connected to {}:{}", host, port);
+                    backoff = 250;
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                    while (running) {
+                        if (resync.getAndSet(false)) writeResync(out);
+                        byte[] frame = queue.take();
+                        if (resync.get()) continue; // the resync supersedes it
+                        out.writeInt(frame.length);
+                        out.write(frame);
+                        if (queue.isEmpty()) out.flush();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    if (!running) return;
+                    // frames in flight may be lost, or the peer restarted empty
+                    if (connected) resync.set(true);
+                    log.debug("Stream bus peer {}:{} unavailable: {}", host, port, e.toString());
+                } finally {
+                    socket = null;
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+            }
+        }
+
+        void close() {
+            if (writer != null) writer.interrupt();
+            Socket s = socket;
+            if (s == null) return;
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+        peers.forEach(Peer::close);
+        for (Socket s : inbound) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+    }
+}
@@ -1,26 +1,31 @@
 package com.swamp_portal.webapp.controllers;
 
 import com.swamp_portal.webapp.AdminGuard;
+import com.swamp_portal.webapp.PasswordVerifier;
 import com.swamp_portal.webapp.SessionService;
-import com.swamp_portal.webapp.db.UserRepo;
+import com.swamp_portal.webapp.db.UserCache;
 import jakarta.servlet.http.*;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api")
 public class AuthController {
-    private final UserRepo users;
+    private final UserCache users;
     private final SessionService sessions;
     private final AdminGuard admin;
-    private final BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(12);
+    private final PasswordVerifier passwords;
 
-    public AuthController(UserRepo users, SessionService sessions, AdminGuard admin) {
+    public AuthController(UserCache users, SessionService sessions, AdminGuard admin, PasswordVerifier passwords) {
         this.users = users;
         this.sessions = sessions;
         this.admin = admin;
+        this.passwords = passwords;
     }
 
     public static record SignupReq(String username, String password) {}
@@ -29,28 +34,45 @@ public class AuthController {
 
     // Admin-only: create user
     @PostMapping("/signup")
-    public Ok signup(@RequestBody SignupReq req, HttpServletRequest httpReq) {
+    public CompletableFuture<Ok> signup(@RequestBody SignupReq req, HttpServletRequest httpReq) {
         admin.requireAdmin(httpReq);
         if (req.username() == null || req.username().isBlank() ||
                 req.password() == null || req.password().length() < 6) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid username/password");
         }
-        String hash = bcrypt.encode(req.password());
-        boolean created = users.createUser(req.username(), hash);
-        if (!created) throw new ResponseStatusException(HttpStatus.CONFLICT, "Username taken");
-        return new Ok("created");
+        return passwords.encode(req.password(), httpReq.getRemoteAddr())
+                .thenCompose(hash -> users.createUser(req.username(), hash))
+                .thenApply(created -> {
+                    if (!created) throw new ResponseStatusException(HttpStatus.CONFLICT, "Username taken");
+                    return new Ok("created");
+                });
     }
 
-    // Anyone: login -> sets HttpOnly cookie if ok
+    // Anyone: login -> HttpOnly session cookie if ok. The user lookup is async and the bcrypt check runs on
+    // the PasswordVerifier pool, so no request thread waits on either; the cookie therefore travels as a
+    // Set-Cookie header on the returned entity rather than through the servlet response. Unknown usernames
+    // still pay for a bcrypt check, so the response time does not tell which accounts exist. The remote
+    // address is the client's own once server.forward-headers-strategy has applied X-Forwarded-For.
     @PostMapping("/login")
-    public Ok login(@RequestBody LoginReq req, HttpServletResponse res) {
-        var item = users.get(req.username());
-        if (item == null) throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid credentials");
-        if (!bcrypt.matches(req.password(), item.getPasswordHash())) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid credentials");
-        }
-        sessions.createSession(res, req.username());
-        return new Ok("ok");
+    public CompletableFuture<ResponseEntity<Ok>> login(@RequestBody LoginReq req, HttpServletRequest httpReq) {
+        String clientIp = httpReq.getRemoteAddr();
+        return users.get(req.username())
+                .thenCompose(item -> (item == null)
+                        ? passwords.matchesUnknownUser(req.password(), req.username(), clientIp)
+                        : passwords.matches(req.password(), item.getPasswordHash(), req.username(), clientIp))
+                .thenApply(ok -> {
+                    if (!ok) throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid credentials");
+                    return ResponseEntity.ok()
+                            .header(HttpHeaders.SET_COOKIE, sessions.createSession(req.username()).toString())
+                            .body(new Ok("ok"));
+                });
+    }
+
+    // Admin-only: password hashing pool figures
+    @GetMapping("/auth/stats")
+    public PasswordVerifier.Stats authStats(HttpServletRequest httpReq) {
+        admin.requireAdmin(httpReq);
+        return passwords.stats();
     }
 
     @PostMapping("/logout")
@@ -0,0 +1,98 @@
+package com.swamp_portal.webapp.controllers;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swamp_portal.webapp.SessionService;
+import com.swamp_portal.webapp.history.PositionHistory;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+@RestController
+public class HistoryController {
+    private final SessionService sessions;
+    private final PositionHistory history;
+    private final ObjectMapper mapper;
+
+    public HistoryController(SessionService sessions, PositionHistory history, ObjectMapper mapper) {
+        this.sessions = sessions;
+        this.history = history;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Where a role was over a time range, one {@code {"timestamp","position":{x,y,z}}} object per line
+     * (NDJSON), oldest first. Streamed straight from the history files.
+     * @param from epoch millis or ISO-8601 instant; defaults to one hour before {@code to}
+     * @param to epoch millis or ISO-8601 instant; defaults to now
+     * @param step minimum seconds between returned samples; every sample if omitted
+     */
+    @GetMapping(value = "/api/history", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> history(@RequestParam("role") String role,
+                                                         @RequestParam(value="from", required=false) String from,
+                                                         @RequestParam(value="to", required=false) String to,
+                                                         @RequestParam(value="step", required=false) Double step,
+                                                         HttpServletRequest req) {
+        if (sessions.getUser(req) == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Login Required!");
+        }
+        if (!history.enabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "History is disabled");
+        }
+
+        Instant end = (to == null) ? Instant.now() : instant(to, "to");
+        long toNanos = nanos(end, "to");
+        Instant start = (from == null) ? end.minusSeconds(3600) : instant(from, "from");
+        long fromNanos = nanos(start, "from");
+        if (start.isAfter(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' is after 'to'");
+        }
+        long stepNanos = (step == null || step <= 0) ? 0 : Math.round(step * 1e9);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator g = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                g.setRootValueSeparator(null);
+                history.query(role, fromNanos, toNanos, stepNanos, (t, x, y, z) -> {
+                    g.writeStartObject();
+                    g.writeNumberField("timestamp", Math.floorDiv(t, 1_000_000L));
+                    g.writeObjectFieldStart("position");
+                    g.writeNumberField("x", x);
+                    g.writeNumberField("y", y);
+                    g.writeNumberField("z", z);
+                    g.writeEndObject();
+                    g.writeEndObject();
+                    g.writeRaw('\n');
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private static Instant instant(String value, String name) {
+        try {
+            return value.chars().allMatch(Character::isDigit) ? Instant.ofEpochMilli(Long.parseLong(value))
+                                                              : Instant.parse(value);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bad '" + name + "': " + value);
+        }
+    }
+
+    // epoch nanos in a long cover 1677..2262; anything outside cannot be stored, so it is a bad request
+    private static long nanos(Instant t, String name) {
+        try {
+            return Math.addExact(Math.multiplyExact(t.getEpochSecond(), 1_000_000_000L), t.getNano());
+        } catch (ArithmeticException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'" + name + "' is out of range: " + t);
+        }
+    }
+}
@@ -1,43 +1,71 @@
 package com.swamp_portal.webapp.controllers;
 
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.swamp_portal.webapp.AdminGuard;
 import com.swamp_portal.webapp.SessionService;
 import com.swamp_portal.webapp.data_format.Plan;
 import com.swamp_portal.webapp.data_format.Report;
-import com.swamp_portal.webapp.data_format.ReportAggregationService;
+import com.swamp_portal.webapp.ingest.IngestPipeline;
+import com.swamp_portal.webapp.stream.SnapshotEncoder;
+import com.swamp_portal.webapp.stream.StreamFormat;
+import com.swamp_portal.webapp.stream.StreamMode;
+import com.swamp_portal.webapp.stream.StreamPublisher;
+import com.swamp_portal.webapp.stream.StreamVariant;
 import jakarta.servlet.http.HttpServletRequest;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
-import java.time.Instant;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 public class StreamController {
-    private Object LastJSON = "{}";
-    private final Set<SseEmitter> clients = new CopyOnWriteArraySet<>();
+    private final StreamPublisher publisher;
     private final SessionService sessions;
     private final AdminGuard admin;
-    public StreamController(SessionService sessions, AdminGuard admin, ReportAggregationService reportAggregationService) {
+    private final SnapshotEncoder snapshots;
+    public StreamController(SessionService sessions, AdminGuard admin, IngestPipeline ingest,
+                            StreamPublisher publisher, SnapshotEncoder snapshots, ObjectMapper mapper,
+                            @Value("${ingest.retry-after-seconds:1}") int retryAfterSeconds,
+                            @Value("${ingest.batch.chunk-size:256}") int batchChunkSize) {
         this.sessions = sessions;
         this.admin = admin;
-        LastJSON = "";
-        this.svc = reportAggregationService;
+        this.publisher = publisher;
+        this.snapshots = snapshots;
+        this.ingest = ingest;
+        this.reportReader = mapper.readerFor(Report.class);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.batchChunkSize = Math.max(1, batchChunkSize);
     }
 
     /**
      * Call this API to subscribe to SSE events.
-     * @param lastEventID
+     * @param lastEventID id of the last event the client saw; only newer frames are sent if still available
+     * @param mode "delta" for one full snapshot followed by versioned delta events; full snapshots otherwise
+     * @param format "packed" for column-packed travel plans (see {@link StreamFormat#PACKED}); JSON objects otherwise
+     * @param maxPoints simplify each travel plan to at most about this many points (rounded down to a
+     *                  {@link StreamVariant} tier); implies snapshot mode
      * @return
      */
-    @GetMapping(value = "/api/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
-    public SseEmitter stream(@RequestHeader(value="Last-Event-ID", required=false) String lastEventID, HttpServletRequest req) {
+    @GetMapping(value = "/api/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(value="Last-Event-ID", required=false) String lastEventID,
+                             @RequestParam(value="mode", required=false) String mode,
+                             @RequestParam(value="format", required=false) String format,
+                             @RequestParam(value="max_points", required=false) Integer maxPoints,
+                             HttpServletRequest req) {
 
         String user = sessions.getUser(req);
         if (user == null) {
@@ -47,69 +75,153 @@ public class StreamController {
         }
 
         SseEmitter emitter = new SseEmitter(0L);
-        clients.add(emitter);
-
-        emitter.onTimeout(() -> clients.remove(emitter));
-        emitter.onCompletion(() -> clients.remove(emitter));
-        emitter.onError(err -> clients.remove(emitter));
-
-        // Attempt Conneciton
-        try {
-            emitter.send(SseEmitter.event().name("Hello")
-                    .id(String.valueOf(Instant.now().toEpochMilli()))
-                    .data("connection successful!"));
-        } catch (IOException err) {
-            // do nothing :)
-        }
-        broadcast(LastJSON);
+        // Attempt Conneciton (greeting + current state are queued like any other frame)
+        publisher.subscribe(emitter, StreamMode.parse(mode), StreamVariant.of(StreamFormat.parse(format), maxPoints), lastEventID);
         return emitter;
     }
 
+    /**
+     * Full-state stream like {@code /api/stream} (snapshot mode), served from a shared multicast sink instead
+     * of a queue and writer per client: a slow client just skips to the newest state, and idle connections
+     * get a heartbeat comment. Meant for large numbers of read-only dashboards.
+     * @param format "packed" for column-packed travel plans, as on /api/stream
+     * @param maxPoints simplified travel plans, as on /api/stream
+     */
+    @GetMapping(value = "/api/stream/rx", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> reactiveStream(@RequestParam(value="format", required=false) String format,
+                                                        @RequestParam(value="max_points", required=false) Integer maxPoints,
+                                                        HttpServletRequest req) {
+        if (sessions.getUser(req) == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Login Required!");
+        }
+        return publisher.reactiveStream(StreamVariant.of(StreamFormat.parse(format), maxPoints));
+    }
+
+    /**
+     * Current stream state in one response, e.g. for a tablet that polls instead of streaming.
+     * CBOR if the client accepts {@code application/cbor}, JSON otherwise; gzipped if it accepts gzip.
+     * Every variant is encoded once per version; the version is the ETag.
+     * @param format "packed" for column-packed travel plans, as on /api/stream
+     * @param maxPoints simplified travel plans, as on /api/stream
+     */
+    @GetMapping("/api/snapshot")
+    public ResponseEntity<byte[]> snapshot(@RequestParam(value="format", required=false) String format,
+                                           @RequestParam(value="max_points", required=false) Integer maxPoints,
+                                           @RequestHeader(value=HttpHeaders.ACCEPT, required=false) String accept,
+                                           @RequestHeader(value=HttpHeaders.ACCEPT_ENCODING, required=false) String acceptEncoding,
+                                           @RequestHeader(value=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch,
+                                           HttpServletRequest req) {
+        if (sessions.getUser(req) == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Login Required!");
+        }
+
+        StreamVariant variant = StreamVariant.of(StreamFormat.parse(format), maxPoints);
+        boolean cbor = accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(m -> m.equalsTypeAndSubtype(SnapshotEncoder.CBOR));
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        SnapshotEncoder.Encoded enc = snapshots.encode(variant, cbor, gzip);
+
+        // weak: the gzipped and plain bodies of one variant share it
+        String etag = "W/\"" + enc.version() + "-" + variant.format().name().toLowerCase() + "-" + variant.maxPoints()
+                + (cbor ? "-cbor" : "") + "\"";
+        ResponseEntity.BodyBuilder res = ResponseEntity.status(etag.equals(ifNoneMatch) ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING)
+                .cacheControl(CacheControl.noCache());
+        if (etag.equals(ifNoneMatch)) return res.build();
+        if (enc.gzip()) res.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return res.contentType(enc.type()).body(enc.bytes());
+    }
+
     /**
      * call this method to broadcast new data to subscribed pages
-     * @param payload data to send
+     * @param payload data to send; serialized once, the same bytes are queued for every client
      */
     public void broadcast(Object payload) {
-        clients.forEach(emitter -> {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("message")
-                        .id(String.valueOf(Instant.now().toEpochMilli()))
-                        .data(payload));
-            } catch (IOException err) {
-                emitter.complete();
-            }
-        });
+        publisher.broadcast(payload);
     }
 
     @PostMapping(value = "/api/send", consumes = MediaType.APPLICATION_JSON_VALUE)
     public void send(@RequestBody Object json, HttpServletRequest req) {
         admin.requireAdmin(req);
-        LastJSON = json;
-        broadcast(json);
+        publisher.publish(json);
     }
 
 //    private final ReportBufferService reportBufferService;
 
-    private final ReportAggregationService svc;
+    private final IngestPipeline ingest;
+
+    private final ObjectReader reportReader;
+
+    private final int retryAfterSeconds;
+    private final int batchChunkSize;
 
+    public static record BatchResult(int accepted) {}
+
+    // Body is bound here; aggregation and broadcast happen on the ingest worker
     @PostMapping(value = "/iot/report", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Void> publish_report(@RequestBody Report report, HttpServletRequest req) {
         admin.requireAdmin(req);
-        svc.ingestReport(report);
-        svc.applyAvgDeviationFromReport(report);
-        LastJSON = svc.buildStreamdataWithAvg();
-        broadcast(LastJSON);
-        return ResponseEntity.accepted().build();
+        return ingest.submitReport(report) ? ResponseEntity.accepted().build() : busy();
     }
 
     @PostMapping(value = "/iot/plan", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Void> publish_plan(@RequestBody Plan plan, HttpServletRequest req) {
         admin.requireAdmin(req);
-        svc.ingestPlan(plan);
-        LastJSON = svc.buildStreamdataWithAvg();
-        broadcast(LastJSON);
-        return ResponseEntity.accepted().build();
+        return ingest.submitPlan(plan) ? ResponseEntity.accepted().build() : busy();
+    }
+
+    /**
+     * Replays buffered reports in one call: a JSON array or an NDJSON stream of reports. The body is
+     * parsed incrementally and handed to the ingest worker in order, in chunks; the whole batch is
+     * published as a single frame. On 429 nothing after the accepted count was applied, and resending
+     * the whole batch is safe (re-ingesting a report is idempotent).
+     */
+    @PostMapping(value = "/iot/reports", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BatchResult> publish_reports(HttpServletRequest req) throws IOException {
+        admin.requireAdmin(req);
+        int accepted = 0;
+        List<Report> chunk = new ArrayList<>(batchChunkSize);
+        try (MappingIterator<Report> it = reportReader.readValues(req.getInputStream())) {
+            while (it.hasNextValue()) {
+                chunk.add(it.nextValue());
+                if (chunk.size() >= batchChunkSize) {
+                    if (!ingest.submitReports(chunk))
+                        return busy(accepted);
+                    accepted += chunk.size();
+                    chunk = new ArrayList<>(batchChunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                if (!ingest.submitReports(chunk))
+                    return busy(accepted);
+                accepted += chunk.size();
+            }
+        } catch (RuntimeException | JacksonException e) {
+            if (accepted > 0) ingest.flush();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed report after " + accepted + " accepted", e);
+        }
+        ingest.flush();
+        return ResponseEntity.accepted().body(new BatchResult(accepted));
+    }
+
+    @GetMapping("/iot/ingest/stats")
+    public IngestPipeline.Stats ingest_stats(HttpServletRequest req) {
+        admin.requireAdmin(req);
+        return ingest.stats();
+    }
+
+    private ResponseEntity<Void> busy() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .build();
+    }
+
+    private ResponseEntity<BatchResult> busy(int accepted) {
+        if (accepted > 0) ingest.flush();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(new BatchResult(accepted));
     }
 
 }
\ No newline at end of file
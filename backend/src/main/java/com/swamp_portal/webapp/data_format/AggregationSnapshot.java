@@ -0,0 +1,153 @@
+package com.swamp_portal.webapp.data_format;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Point-in-time copy of the aggregation state ({@link ReportAggregationService#exportSnapshot()}), and its
+ * binary form. Plans are held as {@link TrajectoryStore.View}s, which never change once taken, so capturing
+ * costs little more than the deviation windows; encoding can then happen on any thread.
+ * <p>
+ * Layout (big-endian): magic, format version, then per section a count and its entries. Plans are written
+ * as columns: nanos, x, y, z, then a flag and, if any sample has orientation, a flag per sample and the
+ * four orientation columns.
+ */
+public final class AggregationSnapshot {
+    private static final int MAGIC = 0x53574147; // "SWAG"
+    private static final int FORMAT = 1;
+
+    final Map<String, TrajectoryStore.View> plans;
+    final Map<String, Integer> newReports;
+    final Map<String, Instant> planStamps;
+    final Map<String, DeviationWindow.Samples> deviations;
+
+    AggregationSnapshot(Map<String, TrajectoryStore.View> plans, Map<String, Integer> newReports,
+                        Map<String, Instant> planStamps, Map<String, DeviationWindow.Samples> deviations) {
+        this.plans = plans;
+        this.newReports = newReports;
+        this.planStamps = planStamps;
+        this.deviations = deviations;
+    }
+
+    public int roles() {
+        return plans.size();
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+
+        out.writeInt(plans.size());
+        for (Map.Entry<String, TrajectoryStore.View> e : plans.entrySet()) {
+            out.writeUTF(e.getKey());
+            writePlan(out, e.getValue());
+        }
+        out.writeInt(newReports.size());
+        for (Map.Entry<String, Integer> e : newReports.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue());
+        }
+        out.writeInt(planStamps.size());
+        for (Map.Entry<String, Instant> e : planStamps.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeLong(e.getValue().getEpochSecond());
+            out.writeInt(e.getValue().getNano());
+        }
+        out.writeInt(deviations.size());
+        for (Map.Entry<String, DeviationWindow.Samples> e : deviations.entrySet()) {
+            DeviationWindow.Samples s = e.getValue();
+            out.writeUTF(e.getKey());
+            out.writeDouble(s.lastT());
+            out.writeInt(s.t().length);
+            for (int i = 0; i < s.t().length; i++) {
+                out.writeDouble(s.t()[i]);
+                out.writeDouble(s.d()[i]);
+            }
+        }
+    }
+
+    /** Reads what {@link #writeTo} wrote; plans come back as batches to be replayed into fresh stores. */
+    static Restored readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not an aggregation snapshot");
+        int format = in.readInt();
+        if (format != FORMAT) throw new IOException("Unsupported aggregation snapshot format " + format);
+
+        Map<String, TrajectoryStore.Batch> plans = new LinkedHashMap<>();
+        for (int n = count(in); n > 0; n--) plans.put(in.readUTF(), readPlan(in));
+        Map<String, Integer> newReports = new LinkedHashMap<>();
+        for (int n = count(in); n > 0; n--) newReports.put(in.readUTF(), in.readInt());
+        Map<String, Instant> planStamps = new LinkedHashMap<>();
+        for (int n = count(in); n > 0; n--) planStamps.put(in.readUTF(), Instant.ofEpochSecond(in.readLong(), in.readInt()));
+        Map<String, DeviationWindow.Samples> deviations = new LinkedHashMap<>();
+        for (int n = count(in); n > 0; n--) {
+            String role = in.readUTF();
+            double lastT = in.readDouble();
+            int size = count(in);
+            double[] t = new double[size], d = new double[size];
+            for (int i = 0; i < size; i++) {
+                t[i] = in.readDouble();
+                d[i] = in.readDouble();
+            }
+            deviations.put(role, new DeviationWindow.Samples(t, d, lastT));
+        }
+        return new Restored(plans, newReports, planStamps, deviations);
+    }
+
+    record Restored(Map<String, TrajectoryStore.Batch> plans, Map<String, Integer> newReports,
+                    Map<String, Instant> planStamps, Map<String, DeviationWindow.Samples> deviations) {}
+
+    private static void writePlan(DataOutputStream out, TrajectoryStore.View v) throws IOException {
+        int n = v.size();
+        out.writeInt(n);
+        boolean oriented = false;
+        for (int i = 0; i < n; i++) out.writeLong(v.epochNanos(i));
+        for (int i = 0; i < n; i++) out.writeDouble(v.x(i));
+        for (int i = 0; i < n; i++) out.writeDouble(v.y(i));
+        for (int i = 0; i < n; i++) {
+            out.writeDouble(v.z(i));
+            oriented |= v.hasOrientation(i);
+        }
+        out.writeBoolean(oriented);
+        if (!oriented) return;
+        for (int i = 0; i < n; i++) out.writeBoolean(v.hasOrientation(i));
+        for (int i = 0; i < n; i++) out.writeDouble(v.ox(i));
+        for (int i = 0; i < n; i++) out.writeDouble(v.oy(i));
+        for (int i = 0; i < n; i++) out.writeDouble(v.oz(i));
+        for (int i = 0; i < n; i++) out.writeDouble(v.ow(i));
+    }
+
+    private static TrajectoryStore.Batch readPlan(DataInputStream in) throws IOException {
+        int n = count(in);
+        long[] nanos = new long[n];
+        double[] x = new double[n], y = new double[n], z = new double[n];
+        for (int i = 0; i < n; i++) nanos[i] = in.readLong();
+        for (int i = 0; i < n; i++) x[i] = in.readDouble();
+        for (int i = 0; i < n; i++) y[i] = in.readDouble();
+        for (int i = 0; i < n; i++) z[i] = in.readDouble();
+
+        TrajectoryStore.Batch batch = new TrajectoryStore.Batch(n);
+        if (!in.readBoolean()) {
+            for (int i = 0; i < n; i++) batch.add(nanos[i], x[i], y[i], z[i]);
+            return batch;
+        }
+        boolean[] has = new boolean[n];
+        double[][] ori = new double[4][n];
+        for (int i = 0; i < n; i++) has[i] = in.readBoolean();
+        for (double[] col : ori) for (int i = 0; i < n; i++) col[i] = in.readDouble();
+        for (int i = 0; i < n; i++) {
+            if (has[i]) batch.add(nanos[i], x[i], y[i], z[i], ori[0][i], ori[1][i], ori[2][i], ori[3][i]);
+            else batch.add(nanos[i], x[i], y[i], z[i]);
+        }
+        return batch;
+    }
+
+    private static int count(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > 1 << 26) throw new IOException("Bad count " + n + " in aggregation snapshot");
+        return n;
+    }
+}
@@ -0,0 +1,176 @@
+package com.swamp_portal.webapp.data_format;
+
+/**
+ * Rolling deviation between a role's reported history and its plan over the last {@code windowSeconds}
+ * of report time, kept across reports. Each history sample is matched to the plan position at the same
+ * {@code t} (linear interpolation between the surrounding plan samples), so timestamps need not line up
+ * exactly. An update costs O(points in the report); sum/count, max (monotonic queue) and p95 (log-bucket
+ * histogram, ~2% resolution) are maintained incrementally as samples enter and leave the window.
+ * <p>
+ * Not thread-safe: updated by the ingest worker only. {@link #stats()} is safe to read from any thread.
+ */
+final class DeviationWindow {
+
+    record Stats(int count, double avg, double max, double p95) {
+        static final Stats EMPTY = new Stats(0, 0.0, 0.0, 0.0);
+    }
+
+    // p95 histogram: bucket 0 holds d < MIN_BUCKET, bucket b >= 1 holds [MIN·G^(b-1), MIN·G^b)
+    private static final double MIN_BUCKET = 1e-3;
+    private static final double GROWTH = 1.02;
+    private static final double LOG_GROWTH = Math.log(GROWTH);
+    private static final int BUCKETS = 1 + (int) Math.ceil(Math.log(1e5 / MIN_BUCKET) / LOG_GROWTH); // up to 100 km
+
+    private final double windowSeconds;
+    private final Ring samples = new Ring(); // (t, d) in t order
+    private final Ring maxQueue = new Ring(); // samples with d strictly decreasing; head is the max
+    private final int[] histogram = new int[BUCKETS];
+    private double sum;
+    private double lastT = Double.NEGATIVE_INFINITY; // history up to here is already counted
+
+    private volatile Stats stats = Stats.EMPTY;
+
+    DeviationWindow(double windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    Stats stats() {
+        return stats;
+    }
+
+    /**
+     * Adds the history samples of one report that are newer than anything seen so far and within
+     * {@code [now - window, now]}, then drops samples that fell out of the window.
+     */
+    void update(PointSeries plan, PointSeries hist, double now) {
+        double cutoff = now - windowSeconds;
+        if (plan != null && hist != null && !plan.isEmpty()) {
+            plan = plan.sorted();
+            hist = hist.sorted();
+            int j = 0;
+            for (int i = 0; i < hist.size(); i++) {
+                double t = hist.t(i);
+                if (t <= lastT || t < cutoff || t > now) continue;
+                while (j < plan.size() && plan.t(j) < t) j++;
+                if (j == plan.size()) break; // this and every later sample is past the end of the plan
+
+                double px, py, pz;
+                if (plan.t(j) == t) {
+                    int k = j;
+                    while (k + 1 < plan.size() && plan.t(k + 1) == t) k++; // last one wins, as in plan ingest
+                    px = plan.x(k); py = plan.y(k); pz = plan.z(k);
+                } else if (j == 0) {
+                    continue; // before the plan starts; no extrapolation
+                } else {
+                    double t0 = plan.t(j - 1), f = (t - t0) / (plan.t(j) - t0);
+                    px = plan.x(j - 1) + f * (plan.x(j) - plan.x(j - 1));
+                    py = plan.y(j - 1) + f * (plan.y(j) - plan.y(j - 1));
+                    pz = plan.z(j - 1) + f * (plan.z(j) - plan.z(j - 1));
+                }
+                double dx = px - hist.x(i), dy = py - hist.y(i), dz = pz - hist.z(i);
+                add(t, Math.sqrt(dx*dx + dy*dy + dz*dz));
+                lastT = t;
+            }
+        }
+        evict(cutoff);
+        stats = computeStats();
+    }
+
+    /** The samples in the window, oldest first, and the newest history time already counted. */
+    record Samples(double[] t, double[] d, double lastT) {}
+
+    Samples samples() {
+        int n = samples.size();
+        double[] t = new double[n], d = new double[n];
+        for (int i = 0; i < n; i++) {
+            t[i] = samples.t(i);
+            d[i] = samples.d(i);
+        }
+        return new Samples(t, d, lastT);
+    }
+
+    /** Refills an empty window from {@link #samples()}; the window is evicted at the next update. */
+    void restore(Samples s) {
+        for (int i = 0; i < s.t().length; i++) add(s.t()[i], s.d()[i]);
+        lastT = s.lastT();
+        stats = computeStats();
+    }
+
+    private void add(double t, double d) {
+        samples.addLast(t, d);
+        sum += d;
+        histogram[bucket(d)]++;
+        while (!maxQueue.isEmpty() && maxQueue.lastD() <= d) maxQueue.removeLast();
+        maxQueue.addLast(t, d);
+    }
+
+    private void evict(double cutoff) {
+        while (!samples.isEmpty() && samples.firstT() < cutoff) {
+            double t = samples.firstT(), d = samples.firstD();
+            samples.removeFirst();
+            sum -= d;
+            histogram[bucket(d)]--;
+            if (!maxQueue.isEmpty() && maxQueue.firstT() == t) maxQueue.removeFirst(); // t is unique in the window
+        }
+        if (samples.isEmpty()) sum = 0.0; // shed accumulated rounding
+    }
+
+    private Stats computeStats() {
+        int n = samples.size();
+        if (n == 0)
+            return Stats.EMPTY;
+        double max = maxQueue.firstD();
+        int rank = (int) Math.ceil(0.95 * n), seen = 0, b = 0;
+        while (b < BUCKETS - 1 && (seen += histogram[b]) < rank) b++;
+        double p95 = Math.min(max, MIN_BUCKET * Math.pow(GROWTH, b)); // bucket upper bound
+        return new Stats(n, Math.max(0.0, sum / n), max, p95);
+    }
+
+    private static int bucket(double d) {
+        if (!(d >= MIN_BUCKET)) return 0; // also NaN
+        return (int) Math.min(BUCKETS - 1, 1 + (long) (Math.log(d / MIN_BUCKET) / LOG_GROWTH));
+    }
+
+    /** Growable ring of (t, d) pairs. */
+    private static final class Ring {
+        private double[] t = new double[64], d = new double[64];
+        private int head, size;
+
+        boolean isEmpty() { return size == 0; }
+        int size() { return size; }
+
+        double firstT() { return t[head]; }
+        double firstD() { return d[head]; }
+        double lastD() { return d[(head + size - 1) % d.length]; }
+        double t(int i) { return t[(head + i) % t.length]; }
+        double d(int i) { return d[(head + i) % d.length]; }
+
+        void addLast(double tv, double dv) {
+            if (size == t.length) grow();
+            int i = (head + size) % t.length;
+            t[i] = tv;
+            d[i] = dv;
+            size++;
+        }
+
+        void removeFirst() {
+            head = (head + 1) % t.length;
+            size--;
+        }
+
+        void removeLast() {
+            size--;
+        }
+
+        private void grow() {
+            double[] nt = new double[t.length * 2], nd = new double[d.length * 2];
+            for (int i = 0; i < size; i++) {
+                nt[i] = t[(head + i) % t.length];
+                nd[i] = d[(head + i) % d.length];
+            }
+            t = nt;
+            d = nd;
+            head = 0;
+        }
+    }
+}
@@ -5,58 +5,84 @@ import java.util.*;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Time-ordered buffer backed by a growable ring.
+ * <p>
+ * In-order batches are appended at the tail, out-of-order batches are merged into a fresh ring,
+ * and expired items are dropped from the head (the newest item is always kept).
+ * {@link #snapshot()} hands out a read-only view over the ring instead of a copy; the ring is
+ * never written in a slot a view can still see, so views stay stable after later mutations.
+ */
 public class ExpiringBuffer<T extends Timestamped> {
-    private final List<T> items = new ArrayList<>();
+    private static final int MIN_CAPACITY = 16;
+
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
+    private Object[] ring = new Object[MIN_CAPACITY];
+    private int head; // physical index of the oldest item
+    private int size;
+
+    // copy-on-write bookkeeping for views handed out by snapshot()
+    private long tailSeq;       // items ever appended to the current ring
+    // set by snapshot() under the read lock; concurrent snapshots can only store the same values
+    private volatile boolean shared;
+    private volatile long sharedFromSeq; // oldest item any view of the current ring can see
+
     public void add(T item) {
         if (item == null)
             return;
         lock.writeLock().lock();
         try {
-            items.add(item);
-            items.sort(Comparator.comparing(Timestamped::getTimestamp));
-            purge(Instant.now());
+            if (size == 0 || !item.getTimestamp().isBefore(last().getTimestamp())) {
+                append(item);
+            } else {
+                merge(List.of(item));
+            }
+            dropBefore(Instant.now());
         } finally {
-             lock.writeLock().unlock();
+            lock.writeLock().unlock();
         }
     }
 
     public void addAll(Collection<T> newItems) {
         if (newItems == null || newItems.isEmpty())
             return;
+        List<T> batch = sortedBatch(newItems);
+        if (batch.isEmpty())
+            return;
         lock.writeLock().lock();
         try {
-            items.addAll(newItems);
-            items.sort(Comparator.comparing(Timestamped::getTimestamp));
-            purge(Instant.now());
+            if (size == 0 || !batch.getFirst().getTimestamp().isBefore(last().getTimestamp())) {
+                for (T item : batch) append(item);
+            } else {
+                merge(batch);
+            }
+            dropBefore(Instant.now());
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /** Drops items older than {@code time} from the head, always keeping the newest one. */
     public void purge(Instant time) {
-        if (items.isEmpty())
-            return;
-
-        if (items.getLast().getTimestamp().isBefore(time)) {
-            T tmp = items.getLast();
-            items.clear();
-            items.add(tmp);
-            return;
+        lock.writeLock().lock();
+        try {
+            dropBefore(time);
+        } finally {
+            lock.writeLock().unlock();
         }
-
-        int dropped = 0;
-        while ((items.size() - dropped) > 1 && items.get(dropped).getTimestamp().isBefore(time))
-            dropped++;
-        if (dropped > 0)
-            items.subList(0, dropped).clear();
     }
 
     public List<T> snapshot() {
         lock.readLock().lock();
         try {
-            return Collections.unmodifiableList(new ArrayList<>(items));
+            if (size == 0)
+                return List.of();
+            if (!shared) {
+                sharedFromSeq = tailSeq - size;
+                shared = true;
+            }
+            return new View<>(ring, head, size);
         } finally {
             lock.readLock().unlock();
         }
@@ -65,7 +91,7 @@ public class ExpiringBuffer<T extends Timestamped> {
     public Optional<T> peek() {
         lock.readLock().lock();
         try {
-            return items.isEmpty() ? Optional.empty() : Optional.of(items.get(0));
+            return size == 0 ? Optional.empty() : Optional.of(at(0));
         } finally {
             lock.readLock().unlock();
         }
@@ -74,22 +100,132 @@ public class ExpiringBuffer<T extends Timestamped> {
     public int size() {
         lock.readLock().lock();
         try {
-            return items.size();
+            return size;
         } finally {
             lock.readLock().unlock();
         }
     }
 
-    public synchronized void clear() {
-        items.clear();
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset(MIN_CAPACITY);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
-    public synchronized void replaceAll(Collection<T> newItems) {
-        items.clear();
-        if (newItems != null && !newItems.isEmpty()) {
-            items.addAll(newItems);
-            items.sort(Comparator.comparing(Timestamped::getTimestamp));
+    public void replaceAll(Collection<T> newItems) {
+        List<T> batch = (newItems == null || newItems.isEmpty()) ? List.of() : sortedBatch(newItems);
+        lock.writeLock().lock();
+        try {
+            reset(Math.max(MIN_CAPACITY, batch.size() * 2));
+            for (T item : batch) append(item);
+            dropBefore(Instant.now());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* ----------------- ring internals (write lock held) ----------------- */
+
+    @SuppressWarnings("unchecked")
+    private T at(int i) {
+        return (T) ring[(head + i) % ring.length];
+    }
+
+    private void dropBefore(Instant time) {
+        while (size > 1 && at(0).getTimestamp().isBefore(time)) {
+            if (!shared)
+                ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+        }
+    }
+
+    private T last() {
+        return at(size - 1);
+    }
+
+    private void append(T item) {
+        if (size == ring.length) {
+            resize(ring.length * 2);
+        } else if (shared && tailSeq - sharedFromSeq >= ring.length) {
+            // the next tail slot may still be visible through a view → move to a fresh ring
+            resize(ring.length);
+        }
+        ring[(head + size) % ring.length] = item;
+        size++;
+        tailSeq++;
+    }
+
+    /** Merges an ordered batch into the live items; always lands in a fresh ring. */
+    private void merge(List<T> batch) {
+        Object[] merged = new Object[Math.max(MIN_CAPACITY, Integer.highestOneBit(size + batch.size()) * 2)];
+        int i = 0, j = 0, k = 0;
+        while (i < size && j < batch.size()) {
+            // stable: existing items go first on equal timestamps
+            merged[k++] = batch.get(j).getTimestamp().isBefore(at(i).getTimestamp()) ? batch.get(j++) : at(i++);
+        }
+        while (i < size) merged[k++] = at(i++);
+        while (j < batch.size()) merged[k++] = batch.get(j++);
+        install(merged, k);
+    }
+
+    private void resize(int capacity) {
+        Object[] next = new Object[capacity];
+        for (int i = 0; i < size; i++) next[i] = ring[(head + i) % ring.length];
+        install(next, size);
+    }
+
+    private void reset(int capacity) {
+        install(new Object[capacity], 0);
+    }
+
+    private void install(Object[] next, int count) {
+        ring = next;
+        head = 0;
+        size = count;
+        tailSeq = count;
+        shared = false;
+    }
+
+    private static <T extends Timestamped> List<T> sortedBatch(Collection<T> items) {
+        List<T> batch = new ArrayList<>(items.size());
+        boolean sorted = true;
+        for (T item : items) {
+            if (item == null) continue;
+            if (sorted && !batch.isEmpty() && item.getTimestamp().isBefore(batch.getLast().getTimestamp()))
+                sorted = false;
+            batch.add(item);
+        }
+        if (!sorted)
+            batch.sort(Comparator.comparing(Timestamped::getTimestamp));
+        return batch;
+    }
+
+    /** Read-only window over a ring; the buffer never rewrites the slots it covers. */
+    private static final class View<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[] ring;
+        private final int head;
+        private final int size;
+
+        View(Object[] ring, int head, int size) {
+            this.ring = ring;
+            this.head = head;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            Objects.checkIndex(index, size);
+            return (T) ring[(head + index) % ring.length];
+        }
+
+        @Override
+        public int size() {
+            return size;
         }
-        purge(Instant.now());
     }
 }
@@ -1,5 +1,6 @@
 package com.swamp_portal.webapp.data_format;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
@@ -51,6 +52,7 @@ public class Plan {
     public static class PoseStamped {
         private Header header;
         private Pose pose;
+        @JsonIgnore
         public Instant getInstant() {
             return (header != null && header.getStamp() != null)
                     ? header.getStamp().toInstant()
@@ -0,0 +1,150 @@
+package com.swamp_portal.webapp.data_format;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A report's {@code [{"t":..,"x":..,"y":..,"z":..}, ...]} array, bound straight into primitive columns by
+ * {@link Deserializer} instead of one {@link Report.Point} per sample. The {@code List<Point>} face
+ * materializes points on demand for callers that still want objects.
+ */
+@JsonDeserialize(using = PointSeries.Deserializer.class)
+@JsonSerialize(using = PointSeries.Serializer.class)
+public final class PointSeries extends AbstractList<Report.Point> implements RandomAccess {
+    private static final double[] EMPTY = new double[0];
+
+    private double[] t = EMPTY, x = EMPTY, y = EMPTY, z = EMPTY;
+    private int size;
+    private boolean sorted = true; // t non-decreasing, known while parsing
+
+    public PointSeries() {}
+
+    public PointSeries(int expected) {
+        if (expected > 0) grow(expected);
+    }
+
+    public void add(double t, double x, double y, double z) {
+        if (size == this.t.length) grow(Math.max(8, size * 2));
+        if (size > 0 && t < this.t[size - 1]) sorted = false;
+        this.t[size] = t;
+        this.x[size] = x;
+        this.y[size] = y;
+        this.z[size] = z;
+        size++;
+    }
+
+    private void grow(int cap) {
+        t = Arrays.copyOf(t, cap);
+        x = Arrays.copyOf(x, cap);
+        y = Arrays.copyOf(y, cap);
+        z = Arrays.copyOf(z, cap);
+    }
+
+    @Override public int size() { return size; }
+
+    public double t(int i) { return t[i]; }
+    public double x(int i) { return x[i]; }
+    public double y(int i) { return y[i]; }
+    public double z(int i) { return z[i]; }
+
+    /** True if samples arrived in non-decreasing {@code t} order. */
+    public boolean isSorted() { return sorted; }
+
+    /** Same conversion as {@link Report.Point#getEpochNanos()}. */
+    public long epochNanos(int i) {
+        return Report.Point.epochNanos(t[i]);
+    }
+
+    /** This series if already in {@code t} order, otherwise a stably sorted copy. */
+    public PointSeries sorted() {
+        if (sorted) return this;
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(t[a], t[b]));
+        PointSeries out = new PointSeries(size);
+        for (int i : order) out.add(t[i], x[i], y[i], z[i]);
+        return out;
+    }
+
+    @Override
+    public Report.Point get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+        Report.Point p = new Report.Point();
+        p.setT(t[i]);
+        p.setX(x[i]);
+        p.setY(y[i]);
+        p.setZ(z[i]);
+        return p;
+    }
+
+    /** Writes the same {@code [{"t","x","y","z"}, ...]} shape straight from the columns. */
+    public static final class Serializer extends JsonSerializer<PointSeries> {
+        @Override
+        public void serialize(PointSeries s, JsonGenerator g, SerializerProvider provider) throws IOException {
+            g.writeStartArray(s, s.size);
+            for (int i = 0; i < s.size; i++) {
+                g.writeStartObject();
+                g.writeNumberField("t", s.t[i]);
+                g.writeNumberField("x", s.x[i]);
+                g.writeNumberField("y", s.y[i]);
+                g.writeNumberField("z", s.z[i]);
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+        }
+    }
+
+    /** Token-streaming binder: no per-point objects, unknown point fields are skipped. */
+    public static final class Deserializer extends JsonDeserializer<PointSeries> {
+        @Override
+        public PointSeries deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() != JsonToken.START_ARRAY)
+                return (PointSeries) ctxt.handleUnexpectedToken(PointSeries.class, p);
+
+            PointSeries out = new PointSeries();
+            JsonToken tok;
+            while ((tok = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (tok == JsonToken.VALUE_NULL) continue;
+                if (tok != JsonToken.START_OBJECT)
+                    return (PointSeries) ctxt.handleUnexpectedToken(PointSeries.class, p);
+
+                double t = 0, x = 0, y = 0, z = 0;
+                String field;
+                while ((field = p.nextFieldName()) != null) {
+                    JsonToken v = p.nextToken();
+                    switch (field) {
+                        case "t" -> t = number(p, v, ctxt);
+                        case "x" -> x = number(p, v, ctxt);
+                        case "y" -> y = number(p, v, ctxt);
+                        case "z" -> z = number(p, v, ctxt);
+                        default -> p.skipChildren();
+                    }
+                }
+                out.add(t, x, y, z);
+            }
+            return out;
+        }
+
+        private static double number(JsonParser p, JsonToken v, DeserializationContext ctxt) throws IOException {
+            if (v == JsonToken.VALUE_NUMBER_FLOAT || v == JsonToken.VALUE_NUMBER_INT)
+                return p.getDoubleValue();
+            if (v == JsonToken.VALUE_NULL)
+                return 0;
+            // strings etc.: same coercion rules as the bean binding used to apply
+            Double d = ctxt.readValue(p, Double.class);
+            return (d == null) ? 0 : d;
+        }
+    }
+}
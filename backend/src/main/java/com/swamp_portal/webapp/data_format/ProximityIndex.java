@@ -0,0 +1,238 @@
+package com.swamp_portal.webapp.data_format;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Uniform grid over (x, y, z, t) holding every planned sample of every role, for spotting plans that bring
+ * two subs within {@code radius} of each other at about the same time ({@code window}). Cells are one
+ * radius wide and one window long, so every sample that can conflict with a new one sits in the 3x3x3x3
+ * block around it.
+ * <p>
+ * Kept in step with the plan buffers through {@link #update}: samples that expired from the head are
+ * removed, new tail samples are inserted and checked against their neighbourhood only, and a rewritten
+ * plan re-indexes that role from its first changed sample on. The closest approach of every conflicting
+ * pair is published as an immutable {@link #events()} list.
+ * <p>
+ * Updates come from the ingest worker only; {@link #events()} may be read from any thread.
+ */
+public final class ProximityIndex {
+
+    /** Closest planned approach of two roles; position is the midpoint between them. */
+    public record Event(String roleA, String roleB, long epochNanos, double distance, double x, double y, double z) {}
+
+    private record Pair(String a, String b) {
+        static Pair of(String r1, String r2) {
+            return (r1.compareTo(r2) < 0) ? new Pair(r1, r2) : new Pair(r2, r1);
+        }
+    }
+
+    private static final class Sample {
+        final Track owner;
+        long seq; // renumbered when a rewrite keeps the sample
+        final long nanos;
+        final double x, y, z;
+        final long ix, iy, iz, it; // cell coordinates
+        final List<Hit> hits = new ArrayList<>(0);
+        int slot; // position in its cell bucket
+
+        Sample(Track owner, long seq, long nanos, double x, double y, double z, long ix, long iy, long iz, long it) {
+            this.owner = owner;
+            this.seq = seq;
+            this.nanos = nanos;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.ix = ix;
+            this.iy = iy;
+            this.iz = iz;
+            this.it = it;
+        }
+    }
+
+    private record Hit(Sample a, Sample b, double distance) {}
+
+    /** What is indexed for one role: its samples in sequence order. */
+    private static final class Track {
+        final String role;
+        final ArrayDeque<Sample> samples = new ArrayDeque<>();
+        long generation = -1;
+        long endSeq;
+
+        Track(String role) {
+            this.role = role;
+        }
+    }
+
+    private final double radius, radiusSq;
+    private final long windowNanos;
+
+    // cell key -> samples in it; keys are hashed cell coordinates, so a bucket may hold several cells
+    private final Map<Long, List<Sample>> cells = new HashMap<>();
+    private final Map<String, Track> tracks = new HashMap<>();
+    private final Map<Pair, Set<Hit>> hits = new HashMap<>();
+    private final Map<Pair, Event> closest = new HashMap<>();
+
+    private volatile List<Event> events = List.of();
+
+    public ProximityIndex(double radiusMeters, double windowSeconds) {
+        this.radius = Math.max(1e-3, radiusMeters);
+        this.radiusSq = radius * radius;
+        this.windowNanos = Math.max(1L, Math.round(windowSeconds * 1e9));
+    }
+
+    /** Conflicting role pairs, closest approach first. */
+    public List<Event> events() {
+        return events;
+    }
+
+    /** Brings {@code role}'s part of the index in line with its current plan view. */
+    public void update(String role, TrajectoryStore.View plan) {
+        Track track = tracks.computeIfAbsent(role, Track::new);
+        Set<Pair> touched = new HashSet<>();
+
+        if (track.generation != plan.generation()) {
+            rewrite(track, plan, touched);
+        } else {
+            while (!track.samples.isEmpty() && track.samples.peekFirst().seq < plan.firstSeq()) {
+                remove(track.samples.pollFirst(), touched);
+            }
+        }
+
+        for (long seq = Math.max(track.endSeq, plan.firstSeq()); seq < plan.endSeq(); seq++) {
+            int i = (int) (seq - plan.firstSeq());
+            track.samples.addLast(insert(track, seq, plan.epochNanos(i), plan.x(i), plan.y(i), plan.z(i), touched));
+        }
+        track.endSeq = Math.max(track.endSeq, plan.endSeq());
+
+        if (!touched.isEmpty()) publish(touched);
+    }
+
+    /* ----------------- internals ----------------- */
+
+    /**
+     * A rewritten plan renumbers its samples. Samples still in the plan up to the first one that changed
+     * keep their place in the grid and just take the new sequence numbers; only the rest is re-indexed.
+     */
+    private void rewrite(Track track, TrajectoryStore.View plan, Set<Pair> touched) {
+        int n = plan.size();
+        long first = (n > 0) ? plan.epochNanos(0) : Long.MAX_VALUE;
+        while (!track.samples.isEmpty() && track.samples.peekFirst().nanos < first) {
+            remove(track.samples.pollFirst(), touched);
+        }
+        int kept = 0;
+        for (Sample s : track.samples) {
+            if (kept == n || s.nanos != plan.epochNanos(kept)
+                    || s.x != plan.x(kept) || s.y != plan.y(kept) || s.z != plan.z(kept))
+                break;
+            s.seq = plan.firstSeq() + kept++;
+        }
+        while (track.samples.size() > kept) remove(track.samples.pollLast(), touched);
+        track.generation = plan.generation();
+        track.endSeq = plan.firstSeq() + kept;
+    }
+
+    private Sample insert(Track track, long seq, long nanos, double x, double y, double z, Set<Pair> touched) {
+        Sample s = new Sample(track, seq, nanos, x, y, z,
+                cell(x), cell(y), cell(z), Math.floorDiv(nanos, windowNanos));
+        for (long dt = -1; dt <= 1; dt++)
+            for (long dx = -1; dx <= 1; dx++)
+                for (long dy = -1; dy <= 1; dy++)
+                    for (long dz = -1; dz <= 1; dz++) {
+                        long cx = s.ix + dx, cy = s.iy + dy, cz = s.iz + dz, ct = s.it + dt;
+                        List<Sample> bucket = cells.get(key(cx, cy, cz, ct));
+                        if (bucket == null) continue;
+                        for (Sample o : bucket) {
+                            // hashed keys: skip samples of other cells sharing the bucket
+                            if (o.owner == track || o.ix != cx || o.iy != cy || o.iz != cz || o.it != ct) continue;
+                            if (Math.abs(o.nanos - nanos) > windowNanos) continue;
+                            double ddx = o.x - x, ddy = o.y - y, ddz = o.z - z;
+                            double d2 = ddx * ddx + ddy * ddy + ddz * ddz;
+                            if (d2 > radiusSq) continue;
+                            Hit hit = new Hit(s, o, Math.sqrt(d2));
+                            s.hits.add(hit);
+                            o.hits.add(hit);
+                            Pair pair = Pair.of(track.role, o.owner.role);
+                            hits.computeIfAbsent(pair, p -> new HashSet<>()).add(hit);
+                            touched.add(pair);
+                        }
+                    }
+        List<Sample> bucket = cells.computeIfAbsent(key(s.ix, s.iy, s.iz, s.it), k -> new ArrayList<>());
+        s.slot = bucket.size();
+        bucket.add(s);
+        return s;
+    }
+
+    private void remove(Sample s, Set<Pair> touched) {
+        long k = key(s.ix, s.iy, s.iz, s.it);
+        List<Sample> bucket = cells.get(k);
+        if (bucket != null) {
+            // swap-remove: order within a bucket does not matter
+            Sample last = bucket.removeLast();
+            if (last != s) {
+                bucket.set(s.slot, last);
+                last.slot = s.slot;
+            }
+            if (bucket.isEmpty()) cells.remove(k);
+        }
+        for (Hit hit : s.hits) {
+            Sample other = (hit.a() == s) ? hit.b() : hit.a();
+            other.hits.remove(hit);
+            Pair pair = Pair.of(s.owner.role, other.owner.role);
+            Set<Hit> set = hits.get(pair);
+            if (set != null) {
+                set.remove(hit);
+                if (set.isEmpty()) hits.remove(pair);
+            }
+            touched.add(pair);
+        }
+        s.hits.clear();
+    }
+
+    /** Recomputes the closest approach of the touched pairs and republishes the event list. */
+    private void publish(Set<Pair> touched) {
+        for (Pair pair : touched) {
+            Set<Hit> set = hits.get(pair);
+            Hit best = null;
+            if (set != null) {
+                for (Hit h : set) {
+                    if (best == null || h.distance() < best.distance()
+                            || (h.distance() == best.distance() && time(h) < time(best))) best = h;
+                }
+            }
+            if (best == null) {
+                closest.remove(pair);
+                continue;
+            }
+            Sample a = best.a().owner.role.equals(pair.a()) ? best.a() : best.b();
+            Sample b = (a == best.a()) ? best.b() : best.a();
+            closest.put(pair, new Event(pair.a(), pair.b(), time(best), best.distance(),
+                    (a.x + b.x) / 2, (a.y + b.y) / 2, (a.z + b.z) / 2));
+        }
+        List<Event> out = new ArrayList<>(closest.values());
+        out.sort(Comparator.comparingDouble(Event::distance).thenComparingLong(Event::epochNanos));
+        events = List.copyOf(out);
+    }
+
+    private static long time(Hit h) {
+        return Math.min(h.a().nanos, h.b().nanos);
+    }
+
+    private long cell(double v) {
+        return (long) Math.floor(v / radius);
+    }
+
+    private static long key(long x, long y, long z, long t) {
+        long h = x * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 29)) + y * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ (h >>> 29)) + z * 0x165667B19E3779F9L;
+        h = (h ^ (h >>> 29)) + t * 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -1,19 +1,13 @@
 package com.swamp_portal.webapp.data_format;
 
-import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.JsonProperty;
-
-import java.time.Instant;
-import java.util.*;
 
 @Getter @Setter
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -28,13 +22,14 @@ public class Report {
     @JsonProperty("sub1_role")          private String sub1Role;
     @JsonProperty("sub2_role")          private String sub2Role;
 
-    @JsonProperty("sub0_plan")          private List<Point> sub0Plan;
-    @JsonProperty("sub1_plan")          private List<Point> sub1Plan;
-    @JsonProperty("sub2_plan")          private List<Point> sub2Plan;
+    // point arrays bind straight into primitive columns, see PointSeries
+    @JsonProperty("sub0_plan")          private PointSeries sub0Plan;
+    @JsonProperty("sub1_plan")          private PointSeries sub1Plan;
+    @JsonProperty("sub2_plan")          private PointSeries sub2Plan;
 
-    @JsonProperty("sub0_history")       private List<Point> sub0History;
-    @JsonProperty("sub1_history")       private List<Point> sub1History;
-    @JsonProperty("sub2_history")       private List<Point> sub2History;
+    @JsonProperty("sub0_history")       private PointSeries sub0History;
+    @JsonProperty("sub1_history")       private PointSeries sub1History;
+    @JsonProperty("sub2_history")       private PointSeries sub2History;
 
     @JsonProperty("logged_dwell_time")  private long loggedDwellTime;
     @JsonProperty("master_epoch")       private long masterEpoch;
@@ -48,11 +43,20 @@ public class Report {
         @JsonProperty("y") private double y;
         @JsonProperty("z") private double z;
 
-        @Override public Instant getTimestamp() {
+        @JsonIgnore @Override public Instant getTimestamp() {
+            long nanos = getEpochNanos();
+            return Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+        }
+
+        @JsonIgnore @Override public long getEpochNanos() {
+            return epochNanos(t);
+        }
+
+        /** Epoch seconds (fractional) to epoch nanos. */
+        public static long epochNanos(double t) {
             long secs  = (long)Math.floor(t);
             long nanos = Math.round((t - secs) * 1_000_000_000d);
-            if (nanos >= 1_000_000_000L) { secs += 1; nanos -= 1_000_000_000L; }
-            return Instant.ofEpochSecond(secs, nanos);
+            return secs * 1_000_000_000L + nanos;
         }
     }
 }
\ No newline at end of file
@@ -1,32 +1,88 @@
 package com.swamp_portal.webapp.data_format;
 
-import com.swamp_portal.webapp.data_format.Report.Point;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
 
 @Service
-@RequiredArgsConstructor
 public class ReportAggregationService {
 
-    // role -> plan buffer (future only; keeps newest if all past)
-    private final Map<String, ExpiringBuffer<TravelPoint>> planBuffers = new ConcurrentHashMap<>();
+    // role -> plan trajectory (future only; keeps newest if all past)
+    private final Map<String, TrajectoryStore> planBuffers = new ConcurrentHashMap<>();
     // role -> new_reports (latest seen from report_stats)
     private final Map<String, Integer> newReports = new ConcurrentHashMap<>();
-    // role -> most recent avg deviation (from last 60s window)
-    private final Map<String, Double> avgPerRole = new ConcurrentHashMap<>();
+    // role -> rolling plan/history deviation over the last deviation.window-seconds of report time
+    private final Map<String, DeviationWindow> deviations = new ConcurrentHashMap<>();
+
+    // shared LTTB results per role and point budget
+    private final TrajectorySimplifier simplifier = new TrajectorySimplifier();
+
+    private final double deviationWindowSeconds;
+
+    // planned close approaches between roles; updated by the ingest worker only
+    private final ProximityIndex proximity;
+
+    private final Timer ingestReportTimer;
+    private final Timer buildTimer;
+
+    /** Plan gauges are fleet-wide aggregates, so the number of series does not grow with the roles seen. */
+    public ReportAggregationService(MeterRegistry meters,
+                                    @Value("${deviation.window-seconds:60}") double deviationWindowSeconds,
+                                    @Value("${proximity.radius-m:5}") double proximityRadius,
+                                    @Value("${proximity.window-seconds:2}") double proximityWindowSeconds) {
+        this.deviationWindowSeconds = deviationWindowSeconds;
+        this.proximity = new ProximityIndex(proximityRadius, proximityWindowSeconds);
+        Gauge.builder("swamp.plan.samples", this, ReportAggregationService::totalPlanSamples)
+                .description("Live samples in all plan buffers").register(meters);
+        Gauge.builder("swamp.plan.samples.max", this, ReportAggregationService::maxPlanSamples)
+                .description("Live samples in the largest plan buffer").register(meters);
+        Gauge.builder("swamp.plan.roles", planBuffers, Map::size)
+                .description("Roles with a plan buffer").register(meters);
+        this.ingestReportTimer = aggregationTimer(meters, "ingest_report");
+        this.buildTimer = aggregationTimer(meters, "build_streamdata");
+    }
+
+    private static Timer aggregationTimer(MeterRegistry meters, String op) {
+        return Timer.builder("swamp.aggregation").tag("op", op)
+                .description("Time spent in one aggregation call")
+                .publishPercentileHistogram().register(meters);
+    }
+
+    private TrajectoryStore buf(String role) {
+        return planBuffers.computeIfAbsent(role, r -> new TrajectoryStore());
+    }
 
-    private ExpiringBuffer<TravelPoint> buf(String role) {
-        return planBuffers.computeIfAbsent(role, r -> new ExpiringBuffer<>());
+    private double totalPlanSamples() {
+        long n = 0;
+        for (TrajectoryStore store : planBuffers.values()) n += store.size();
+        return n;
+    }
+
+    private double maxPlanSamples() {
+        int max = 0;
+        for (TrajectoryStore store : planBuffers.values()) max = Math.max(max, store.size());
+        return max;
+    }
+
+    private void indexProximity(String role, TrajectoryStore store) {
+        proximity.update(role, store.snapshot());
     }
 
     /* ----------------- REPORT INGEST (unchanged behavior) ----------------- */
 
     public void ingestReport(Report r) {
         if (r == null) return;
+        long started = System.nanoTime();
 
         if (r.getReportStats() != null) {
             r.getReportStats().forEach((role, count) -> {
@@ -38,51 +94,32 @@ public class ReportAggregationService {
         handleReportRole(r.getSub0Role(), r.getSub0Plan());
         handleReportRole(r.getSub1Role(), r.getSub1Plan());
         handleReportRole(r.getSub2Role(), r.getSub2Plan());
+        ingestReportTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
     }
 
-    private void handleReportRole(String role, List<Point> plan) {
+    private void handleReportRole(String role, PointSeries plan) {
         if (role == null || plan == null || plan.isEmpty()) return;
-        List<TravelPoint> converted = new ArrayList<>(plan.size());
-        for (Point p : plan) {
-            Instant ts = p.getTimestamp();
-            converted.add(new TravelPoint(
-                    ts, p.getX(), p.getY(), p.getZ(),
-                    null, null, null, null // no orientation in Report
-            ));
+        TrajectoryStore.Batch batch = new TrajectoryStore.Batch(plan.size());
+        for (int i = 0; i < plan.size(); i++) {
+            batch.add(plan.epochNanos(i), plan.x(i), plan.y(i), plan.z(i)); // no orientation in Report
         }
-        buf(role).addAll(converted);
+        TrajectoryStore store = buf(role);
+        store.merge(batch, TrajectoryStore.epochNanos(Instant.now()));
+        indexProximity(role, store);
     }
 
-    /** Optional: compute avg_deviation after ingesting a Report */
+    /** Optional: update the deviation window after ingesting a Report */
     public void applyAvgDeviationFromReport(Report r) {
         if (r == null) return;
-        computeAvgForRole(r.getSub0Role(), r.getSub0Plan(), r.getSub0History(), r.getSnapshotSentTime());
-        computeAvgForRole(r.getSub1Role(), r.getSub1Plan(), r.getSub1History(), r.getSnapshotSentTime());
-        computeAvgForRole(r.getSub2Role(), r.getSub2Plan(), r.getSub2History(), r.getSnapshotSentTime());
+        updateDeviation(r.getSub0Role(), r.getSub0Plan(), r.getSub0History(), r.getSnapshotSentTime());
+        updateDeviation(r.getSub1Role(), r.getSub1Plan(), r.getSub1History(), r.getSnapshotSentTime());
+        updateDeviation(r.getSub2Role(), r.getSub2Plan(), r.getSub2History(), r.getSnapshotSentTime());
     }
 
-    private void computeAvgForRole(String role, List<Point> plan, List<Point> hist, double snapTime) {
+    private void updateDeviation(String role, PointSeries plan, PointSeries hist, double snapTime) {
         if (role == null || plan == null || hist == null) return;
-        double start = snapTime - 60.0;
-
-        Map<Double, Point> planByT = new HashMap<>();
-        for (Point p : plan) if (p.getT() >= start && p.getT() <= snapTime) planByT.put(p.getT(), p);
-
-        double sum = 0.0; int n = 0;
-        for (Point h : hist) {
-            if (h.getT() >= start && h.getT() <= snapTime) {
-                Point p = planByT.get(h.getT());
-                if (p != null) {
-                    double dx = p.getX() - h.getX();
-                    double dy = p.getY() - h.getY();
-                    double dz = p.getZ() - h.getZ();
-                    sum += Math.sqrt(dx*dx + dy*dy + dz*dz);
-                    n++;
-                }
-            }
-        }
-        double avg = (n == 0) ? 0.0 : (sum / n);
-        avgPerRole.put(role, avg);
+        deviations.computeIfAbsent(role, r -> new DeviationWindow(deviationWindowSeconds))
+                .update(plan, hist, snapTime);
     }
 
     /* ----------------- PLAN INGEST (NEW) ----------------- */
@@ -110,78 +147,288 @@ public class ReportAggregationService {
             return;
         }
 
-        // Flatten poses → TravelPoint list
-        List<TravelPoint> pts = new ArrayList<>();
+        // Flatten poses → columnar batch
+        TrajectoryStore.Batch pts = new TrajectoryStore.Batch(0);
         if (block.getPaths() != null) {
             for (Plan.Path path : block.getPaths()) {
                 if (path == null || path.getPoses() == null) continue;
                 for (Plan.PoseStamped ps : path.getPoses()) {
                     if (ps == null || ps.getPose() == null || ps.getPose().getPosition() == null) continue;
-                    var ts  = ps.getInstant();
+                    long ts = TrajectoryStore.epochNanos(ps.getInstant());
                     var pos = ps.getPose().getPosition();
                     var ori = ps.getPose().getOrientation();
-                    pts.add(new TravelPoint(
-                            ts,
-                            pos.getX(), pos.getY(), pos.getZ(),
-                            (ori != null ? ori.getX() : null),
-                            (ori != null ? ori.getY() : null),
-                            (ori != null ? ori.getZ() : null),
-                            (ori != null ? ori.getW() : null)
-                    ));
+                    if (ori != null) {
+                        pts.add(ts, pos.getX(), pos.getY(), pos.getZ(), ori.getX(), ori.getY(), ori.getZ(), ori.getW());
+                    } else {
+                        pts.add(ts, pos.getX(), pos.getY(), pos.getZ());
+                    }
                 }
             }
         }
 
-        if (!pts.isEmpty()) {
+        if (pts.size() > 0) {
             // Replace buffer contents atomically with the new plan
-            buf(role).replaceAll(pts);
+            TrajectoryStore store = buf(role);
+            store.replace(pts, TrajectoryStore.epochNanos(Instant.now()));
             lastPlanStamp.put(role, planStamp);
+            indexProximity(role, store);
         }
     }
 
+    /* ----------------- SNAPSHOT ----------------- */
+
+    /** Copies the aggregation state for a checkpoint; call from the ingest worker, between updates. */
+    public AggregationSnapshot exportSnapshot() {
+        Map<String, TrajectoryStore.View> plans = new TreeMap<>();
+        planBuffers.forEach((role, store) -> plans.put(role, store.snapshot()));
+        Map<String, DeviationWindow.Samples> devs = new TreeMap<>();
+        deviations.forEach((role, window) -> devs.put(role, window.samples()));
+        return new AggregationSnapshot(plans, new TreeMap<>(newReports), new TreeMap<>(lastPlanStamp), devs);
+    }
+
+    /**
+     * Loads a snapshot written by {@link AggregationSnapshot#writeTo} into an empty service (startup, before
+     * any ingest). Plans are expired against the current time as they would be on ingest. Returns the number
+     * of roles restored.
+     */
+    public int restoreSnapshot(DataInputStream in) throws IOException {
+        AggregationSnapshot.Restored r = AggregationSnapshot.readFrom(in);
+        long now = TrajectoryStore.epochNanos(Instant.now());
+        r.plans().forEach((role, batch) -> {
+            TrajectoryStore store = buf(role);
+            store.replace(batch, now);
+            indexProximity(role, store);
+        });
+        newReports.putAll(r.newReports());
+        lastPlanStamp.putAll(r.planStamps());
+        r.deviations().forEach((role, samples) ->
+                deviations.computeIfAbsent(role, k -> new DeviationWindow(deviationWindowSeconds)).restore(samples));
+        return r.plans().size();
+    }
+
     /* ----------------- BUILD FRONTEND SHAPE ----------------- */
 
+    /** Captures every role's plan view and scalars; cheap, views are not copied. */
+    public StreamState captureState() {
+        List<String> roles = new ArrayList<>(planBuffers.keySet());
+        Collections.sort(roles);
+
+        List<StreamState.RoleState> out = new ArrayList<>(roles.size());
+        for (String role : roles) {
+            DeviationWindow window = deviations.get(role);
+            DeviationWindow.Stats dev = (window == null) ? DeviationWindow.Stats.EMPTY : window.stats();
+            out.add(new StreamState.RoleState(
+                    role,
+                    planBuffers.get(role).snapshot(),
+                    newReports.getOrDefault(role, 0),
+                    dev.avg(), dev.max(), dev.p95()));
+        }
+        return new StreamState(out, proximity.events());
+    }
+
     /** Streamdata for frontend. Includes orientation when present in buffers. */
     public Map<String, Object> buildStreamdataWithAvg() {
+        long started = System.nanoTime();
+        Map<String, Object> out = buildStreamdata(captureState());
+        buildTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return out;
+    }
+
+    public Map<String, Object> buildStreamdata(StreamState state) {
+        return buildStreamdata(state, false, 0);
+    }
+
+    /**
+     * @param packed travel plans as columns (see {@link #packedTravelPlan}) instead of one object per point
+     * @param maxPoints if positive, longer travel plans are simplified (LTTB) to at most this many points
+     */
+    public Map<String, Object> buildStreamdata(StreamState state, boolean packed, int maxPoints) {
+        if (maxPoints > 0) simplifier.retain(planBuffers.keySet());
         Map<String, Object> out = new LinkedHashMap<>();
         List<Map<String, Object>> subs = new ArrayList<>();
 
-        out.put("num_subs", planBuffers.size());
+        out.put("num_subs", state.roles().size());
 
-        List<String> roles = new ArrayList<>(planBuffers.keySet());
-        Collections.sort(roles);
+        for (StreamState.RoleState rs : state.roles()) {
+            subs.add(subObject(rs, packed, maxPoints));
+        }
 
-        for (String role : roles) {
-            List<TravelPoint> tp = planBuffers.get(role).snapshot();
-
-            List<Map<String, Object>> travelPlan = new ArrayList<>(tp.size());
-            for (TravelPoint p : tp) {
-                Map<String, Object> entry = new LinkedHashMap<>();
-                entry.put("timestamp", p.getTimestamp().toEpochMilli());
-                entry.put("position", Map.of("x", p.getX(), "y", p.getY(), "z", p.getZ()));
-
-                // Include orientation iff available
-                if (p.getOx() != null && p.getOy() != null && p.getOz() != null && p.getOw() != null) {
-                    entry.put("orientation", Map.of(
-                            "x", p.getOx(), "y", p.getOy(),
-                            "z", p.getOz(), "w", p.getOw()
-                    ));
-                }
-                travelPlan.add(entry);
-            }
+        out.put("Subs", subs);
+        out.put("Events", events(state.events()));
+        return out;
+    }
+
+    /**
+     * Changes from {@code prev} to {@code cur}, applied on top of stream version {@code version - 1}.
+     * Per role: "expired" (points dropped from the head) and "appended" (new tail points) while the plan
+     * only grew/expired, a full "travel_plan" when it was rewritten, and any changed scalars.
+     * Roles that changed nothing are left out; new roles come as full sub objects.
+     */
+    public Map<String, Object> buildStreamDelta(StreamState prev, StreamState cur, long version) {
+        return buildStreamDelta(prev, cur, version, false);
+    }
+
+    public Map<String, Object> buildStreamDelta(StreamState prev, StreamState cur, long version, boolean packed) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("version", version);
+        out.put("base", version - 1);
+        out.put("num_subs", cur.roles().size());
 
-            Map<String, Object> subObj = new LinkedHashMap<>();
-            subObj.put("name", role); // we only have role labels here
-            subObj.put("new_reports", newReports.getOrDefault(role, 0));
-            subObj.put("role", role);
-            subObj.put("travel_plan", travelPlan);
-            subObj.put("avg_deviation", avgPerRole.getOrDefault(role, 0.0));
+        Map<String, StreamState.RoleState> before = new HashMap<>();
+        for (StreamState.RoleState rs : prev.roles()) before.put(rs.role(), rs);
 
-            subs.add(subObj);
+        List<Map<String, Object>> subs = new ArrayList<>();
+        for (StreamState.RoleState rs : cur.roles()) {
+            StreamState.RoleState old = before.remove(rs.role());
+            if (old == null) {
+                subs.add(subObject(rs, packed, 0));
+                continue;
+            }
+
+            Map<String, Object> change = new LinkedHashMap<>();
+            TrajectoryStore.View p = old.plan(), c = rs.plan();
+            if (p.generation() != c.generation()) {
+                change.put("travel_plan", travelPlan(c, 0, packed));
+            } else {
+                long expired = Math.min(c.firstSeq(), p.endSeq()) - p.firstSeq();
+                int appendFrom = (int) (Math.max(p.endSeq(), c.firstSeq()) - c.firstSeq());
+                if (expired > 0) change.put("expired", expired);
+                if (appendFrom < c.size()) change.put("appended", travelPlan(c, appendFrom, packed));
+            }
+            if (old.newReports() != rs.newReports()) change.put("new_reports", rs.newReports());
+            if (Double.compare(old.avgDeviation(), rs.avgDeviation()) != 0) change.put("avg_deviation", rs.avgDeviation());
+            if (Double.compare(old.maxDeviation(), rs.maxDeviation()) != 0) change.put("max_deviation", rs.maxDeviation());
+            if (Double.compare(old.p95Deviation(), rs.p95Deviation()) != 0) change.put("p95_deviation", rs.p95Deviation());
+
+            if (!change.isEmpty()) {
+                Map<String, Object> subObj = new LinkedHashMap<>();
+                subObj.put("role", rs.role());
+                subObj.putAll(change);
+                subs.add(subObj);
+            }
         }
 
         out.put("Subs", subs);
-        out.put("Events", List.of()); // Plan has no events
+        if (!prev.events().equals(cur.events())) out.put("Events", events(cur.events()));
+        if (!before.isEmpty()) out.put("removed", new ArrayList<>(new TreeSet<>(before.keySet())));
+        return out;
+    }
+
+    /** Proximity warnings in the frontend's event shape (time in epoch seconds). */
+    private static List<Map<String, Object>> events(List<ProximityIndex.Event> events) {
+        List<Map<String, Object>> out = new ArrayList<>(events.size());
+        for (ProximityIndex.Event e : events) {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("time", e.epochNanos() / 1e9);
+            event.put("from", e.roleA() + "/" + e.roleB());
+            event.put("event_type", "proximity warning");
+            event.put("msg", String.format(Locale.ROOT, "%s and %s plans pass within %.1f m", e.roleA(), e.roleB(), e.distance()));
+            event.put("pos", Map.of("x", e.x(), "y", e.y(), "z", e.z()));
+            out.add(event);
+        }
+        return out;
+    }
+
+    private Map<String, Object> subObject(StreamState.RoleState rs, boolean packed, int maxPoints) {
+        Map<String, Object> subObj = new LinkedHashMap<>();
+        subObj.put("name", rs.role()); // we only have role labels here
+        subObj.put("new_reports", rs.newReports());
+        subObj.put("role", rs.role());
+        int[] picked = simplifier.simplify(rs.role(), rs.plan(), maxPoints);
+        subObj.put("travel_plan", (picked == null) ? travelPlan(rs.plan(), 0, packed) : travelPlan(rs.plan(), picked, packed));
+        subObj.put("avg_deviation", rs.avgDeviation());
+        subObj.put("max_deviation", rs.maxDeviation());
+        subObj.put("p95_deviation", rs.p95Deviation());
+        return subObj;
+    }
+
+    private Object travelPlan(TrajectoryStore.View tp, int from, boolean packed) {
+        return travelPlan(tp, null, from, packed);
+    }
+
+    private Object travelPlan(TrajectoryStore.View tp, int[] picked, boolean packed) {
+        return travelPlan(tp, picked, 0, packed);
+    }
+
+    /** Points {@code picked} (sample indices, in order) of {@code tp}, or all from {@code from} if null. */
+    private Object travelPlan(TrajectoryStore.View tp, int[] picked, int from, boolean packed) {
+        int n = (picked != null) ? picked.length : tp.size() - from;
+        IntUnaryOperator index = (picked != null) ? k -> picked[k] : k -> from + k;
+        return packed ? packedTravelPlan(tp, n, index) : travelPlan(tp, n, index);
+    }
+
+    /**
+     * Compact travel plan: {@code t0} epoch millis of the first point, {@code dt} millis since the previous
+     * point (0 for the first), {@code xyz} position triples and, only if some point has an orientation,
+     * {@code q} quaternions (x, y, z, w), null for the points without one. Values keep full double precision,
+     * the same as the JSON format; the size saving comes from dropping the per-point keys.
+     */
+    private Map<String, Object> packedTravelPlan(TrajectoryStore.View tp, int n, IntUnaryOperator index) {
+        long[] dt = new long[n];
+        double[] xyz = new double[3 * n];
+        boolean anyOrientation = false, allOrientation = true;
+        long t0 = (n > 0) ? tp.epochMillis(index.applyAsInt(0)) : 0L;
+        long prev = t0;
+        for (int k = 0; k < n; k++) {
+            int i = index.applyAsInt(k);
+            long t = tp.epochMillis(i);
+            dt[k] = t - prev;
+            prev = t;
+            xyz[3 * k] = tp.x(i);
+            xyz[3 * k + 1] = tp.y(i);
+            xyz[3 * k + 2] = tp.z(i);
+            if (tp.hasOrientation(i)) anyOrientation = true;
+            else allOrientation = false;
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("t0", t0);
+        out.put("dt", dt);
+        out.put("xyz", xyz);
+        if (anyOrientation) {
+            if (allOrientation) {
+                double[] q = new double[4 * n];
+                for (int k = 0; k < n; k++) {
+                    int i = index.applyAsInt(k);
+                    q[4 * k] = tp.ox(i);
+                    q[4 * k + 1] = tp.oy(i);
+                    q[4 * k + 2] = tp.oz(i);
+                    q[4 * k + 3] = tp.ow(i);
+                }
+                out.put("q", q);
+            } else {
+                Double[] q = new Double[4 * n];
+                for (int k = 0; k < n; k++) {
+                    int i = index.applyAsInt(k);
+                    if (!tp.hasOrientation(i)) continue;
+                    q[4 * k] = tp.ox(i);
+                    q[4 * k + 1] = tp.oy(i);
+                    q[4 * k + 2] = tp.oz(i);
+                    q[4 * k + 3] = tp.ow(i);
+                }
+                out.put("q", q);
+            }
+        }
         return out;
     }
-}
\ No newline at end of file
+
+    private List<Map<String, Object>> travelPlan(TrajectoryStore.View tp, int n, IntUnaryOperator index) {
+        List<Map<String, Object>> travelPlan = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            int i = index.applyAsInt(k);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("timestamp", tp.epochMillis(i));
+            entry.put("position", Map.of("x", tp.x(i), "y", tp.y(i), "z", tp.z(i)));
+
+            // Include orientation iff available
+            if (tp.hasOrientation(i)) {
+                entry.put("orientation", Map.of(
+                        "x", tp.ox(i), "y", tp.oy(i),
+                        "z", tp.oz(i), "w", tp.ow(i)
+                ));
+            }
+            travelPlan.add(entry);
+        }
+        return travelPlan;
+    }
+}
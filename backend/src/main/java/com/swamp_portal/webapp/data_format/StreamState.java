@@ -0,0 +1,13 @@
+package com.swamp_portal.webapp.data_format;
+
+import java.util.List;
+
+/**
+ * Immutable capture of the aggregation state, roles sorted by name; the unit stream frames are built from.
+ * {@code events} are the current proximity warnings, closest first.
+ */
+public record StreamState(List<RoleState> roles, List<ProximityIndex.Event> events) {
+
+    public record RoleState(String role, TrajectoryStore.View plan, int newReports,
+                            double avgDeviation, double maxDeviation, double p95Deviation) {}
+}
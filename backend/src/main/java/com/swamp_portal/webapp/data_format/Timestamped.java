@@ -4,4 +4,9 @@ import java.time.Instant;
 
 public interface Timestamped {
     Instant getTimestamp();
+
+    /** Same instant as {@link #getTimestamp()} in epoch nanos; override to skip the {@link Instant}. */
+    default long getEpochNanos() {
+        return TrajectoryStore.epochNanos(getTimestamp());
+    }
 }
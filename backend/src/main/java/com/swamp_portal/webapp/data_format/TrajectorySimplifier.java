@@ -0,0 +1,89 @@
+package com.swamp_portal.webapp.data_format;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Largest-Triangle-Three-Buckets over a time-ordered plan, with triangle areas taken on the 3D positions:
+ * keeps the first and last sample and, per bucket, the sample that bends the path the most. Results are
+ * cached per role and point budget for the current plan contents, so every subscriber at one resolution
+ * shares one simplification.
+ */
+public final class TrajectorySimplifier {
+    private record Key(String role, int maxPoints) {}
+    private record Entry(long generation, long firstSeq, long endSeq, int[] indices) {}
+
+    private final Map<Key, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Indices into {@code plan} of at most {@code maxPoints} samples, in order; null if the plan already
+     * fits (send it whole).
+     */
+    public int[] simplify(String role, TrajectoryStore.View plan, int maxPoints) {
+        if (maxPoints <= 0 || plan.size() <= maxPoints)
+            return null;
+        Key key = new Key(role, maxPoints);
+        Entry e = cache.get(key);
+        if (e != null && e.generation() == plan.generation() && e.firstSeq() == plan.firstSeq() && e.endSeq() == plan.endSeq())
+            return e.indices();
+        int[] indices = lttb(plan, maxPoints);
+        cache.put(key, new Entry(plan.generation(), plan.firstSeq(), plan.endSeq(), indices));
+        return indices;
+    }
+
+    /** Drops cached results for roles that no longer exist. */
+    public void retain(Collection<String> roles) {
+        cache.keySet().removeIf(k -> !roles.contains(k.role()));
+    }
+
+    static int[] lttb(TrajectoryStore.View p, int threshold) {
+        int n = p.size();
+        threshold = Math.max(3, threshold);
+        if (n <= threshold) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+            return all;
+        }
+        int[] out = new int[threshold];
+        double every = (double) (n - 2) / (threshold - 2);
+
+        int a = 0;
+        out[0] = 0;
+        for (int k = 0; k < threshold - 2; k++) {
+            // average of the next bucket (the last point for the final bucket)
+            int nextStart = (int) Math.floor((k + 1) * every) + 1;
+            int nextEnd = Math.min((int) Math.floor((k + 2) * every) + 1, n);
+            if (nextStart >= nextEnd) nextStart = nextEnd - 1;
+            double cx = 0, cy = 0, cz = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                cx += p.x(i);
+                cy += p.y(i);
+                cz += p.z(i);
+            }
+            int len = nextEnd - nextStart;
+            cx /= len; cy /= len; cz /= len;
+
+            int from = (int) Math.floor(k * every) + 1;
+            int to = (int) Math.floor((k + 1) * every) + 1;
+            double ax = p.x(a), ay = p.y(a), az = p.z(a);
+            double best = -1;
+            int pick = from;
+            for (int i = from; i < to; i++) {
+                // |AB x AC|: twice the triangle area
+                double bx = p.x(i) - ax, by = p.y(i) - ay, bz = p.z(i) - az;
+                double qx = cx - ax, qy = cy - ay, qz = cz - az;
+                double ix = by * qz - bz * qy, iy = bz * qx - bx * qz, iz = bx * qy - by * qx;
+                double area = ix * ix + iy * iy + iz * iz;
+                if (area > best) {
+                    best = area;
+                    pick = i;
+                }
+            }
+            out[k + 1] = pick;
+            a = pick;
+        }
+        out[threshold - 1] = n - 1;
+        return out;
+    }
+}
@@ -0,0 +1,348 @@
+package com.swamp_portal.webapp.data_format;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Columnar, time-ordered trajectory for one role (struct-of-arrays instead of one {@link TravelPoint} per sample).
+ * <p>
+ * Samples are keyed by epoch nanos; a sample with an already-known timestamp replaces the old one.
+ * Like {@link ExpiringBuffer}, only future samples are kept (plus the newest one if everything is past).
+ * Columns are append-only: anything that would rewrite a published slot (out-of-order insert, value
+ * change, replace, compaction) moves to fresh arrays, so {@link View}s never need copying.
+ */
+public class TrajectoryStore {
+    private static final int MIN_CAPACITY = 16;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Columns cols = new Columns(MIN_CAPACITY);
+    private int start, end;  // live range in cols
+    private long baseSeq;    // sequence number of cols slot 0
+    private long generation; // bumped whenever published samples are rewritten
+
+    /** Merges samples into the trajectory, then expires everything before {@code nowNanos}. */
+    public void merge(Batch batch, long nowNanos) {
+        if (batch == null || batch.size == 0)
+            return;
+        batch.normalize();
+        lock.writeLock().lock();
+        try {
+            // samples older than both "now" and the oldest live sample would be purged again right away
+            int from = (end == start) ? 0 : batch.firstAtOrAfter(Math.min(nowNanos, cols.nanos[start]));
+            int tailFrom = (end == start) ? 0 : Math.max(from, batch.firstAfter(cols.nanos[end - 1]));
+            if (overlapUnchanged(batch, from, tailFrom)) {
+                appendTail(batch, tailFrom);
+            } else {
+                rewrite(batch, from);
+            }
+            purge(nowNanos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Replaces the whole trajectory with {@code batch}. */
+    public void replace(Batch batch, long nowNanos) {
+        lock.writeLock().lock();
+        try {
+            long nextSeq = baseSeq + end;
+            int n = (batch == null) ? 0 : batch.normalize();
+            cols = new Columns(Math.max(MIN_CAPACITY, n * 2));
+            if (n > 0)
+                cols.copyFrom(batch.cols, 0, 0, n);
+            start = 0;
+            end = n;
+            baseSeq = nextSeq;
+            generation++;
+            purge(nowNanos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public View snapshot() {
+        lock.readLock().lock();
+        try {
+            return new View(cols, start, end, baseSeq + start, generation);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return end - start;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static long epochNanos(Instant t) {
+        return t.getEpochSecond() * 1_000_000_000L + t.getNano();
+    }
+
+    /* ----------------- internals (write lock held) ----------------- */
+
+    private void purge(long nowNanos) {
+        while (end - start > 1 && cols.nanos[start] < nowNanos)
+            start++;
+    }
+
+    /** True if every batch sample in {@code [from, tailFrom)} already exists with identical values. */
+    private boolean overlapUnchanged(Batch batch, int from, int tailFrom) {
+        int searchFrom = start;
+        for (int i = from; i < tailFrom; i++) {
+            int at = Arrays.binarySearch(cols.nanos, searchFrom, end, batch.cols.nanos[i]);
+            if (at < 0 || !cols.sameSample(at, batch.cols, i))
+                return false;
+            searchFrom = at + 1;
+        }
+        return true;
+    }
+
+    private void appendTail(Batch batch, int tailFrom) {
+        int n = batch.size - tailFrom;
+        if (n <= 0)
+            return;
+        if (end + n > cols.capacity()) {
+            // grow or compact into fresh columns; sequence numbers are preserved
+            int live = end - start;
+            Columns next = new Columns(Math.max(MIN_CAPACITY, Integer.highestOneBit(live + n) * 2));
+            next.copyFrom(cols, start, 0, live);
+            cols = next;
+            baseSeq += start;
+            start = 0;
+            end = live;
+        }
+        cols.copyFrom(batch.cols, tailFrom, end, n);
+        end += n;
+    }
+
+    /** Ordered merge of live samples and {@code batch} from {@code from} on (batch wins on equal timestamps). */
+    private void rewrite(Batch batch, int from) {
+        long nextSeq = baseSeq + end;
+        Columns merged = new Columns(Math.max(MIN_CAPACITY, Integer.highestOneBit(end - start + batch.size) * 2));
+        int i = start, j = from, k = 0;
+        while (i < end && j < batch.size) {
+            long a = cols.nanos[i], b = batch.cols.nanos[j];
+            if (a < b) {
+                merged.copyFrom(cols, i++, k++, 1);
+            } else {
+                merged.copyFrom(batch.cols, j++, k++, 1);
+                if (a == b) i++;
+            }
+        }
+        if (i < end) { merged.copyFrom(cols, i, k, end - i); k += end - i; }
+        if (j < batch.size) { merged.copyFrom(batch.cols, j, k, batch.size - j); k += batch.size - j; }
+        cols = merged;
+        start = 0;
+        end = k;
+        baseSeq = nextSeq;
+        generation++;
+    }
+
+    /* ----------------- columns ----------------- */
+
+    private static final class Columns {
+        long[] nanos;
+        double[] x, y, z;
+        double[] ox, oy, oz, ow;
+        long[] hasOrientation; // presence bitmap
+
+        Columns(int capacity) {
+            nanos = new long[capacity];
+            x = new double[capacity];
+            y = new double[capacity];
+            z = new double[capacity];
+            ox = new double[capacity];
+            oy = new double[capacity];
+            oz = new double[capacity];
+            ow = new double[capacity];
+            hasOrientation = new long[(capacity + 63) >>> 6];
+        }
+
+        int capacity() {
+            return nanos.length;
+        }
+
+        boolean oriented(int i) {
+            return (hasOrientation[i >>> 6] & (1L << i)) != 0;
+        }
+
+        void setOriented(int i, boolean present) {
+            if (present) hasOrientation[i >>> 6] |= 1L << i;
+            else hasOrientation[i >>> 6] &= ~(1L << i);
+        }
+
+        void grow(int capacity) {
+            nanos = Arrays.copyOf(nanos, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            z = Arrays.copyOf(z, capacity);
+            ox = Arrays.copyOf(ox, capacity);
+            oy = Arrays.copyOf(oy, capacity);
+            oz = Arrays.copyOf(oz, capacity);
+            ow = Arrays.copyOf(ow, capacity);
+            hasOrientation = Arrays.copyOf(hasOrientation, (capacity + 63) >>> 6);
+        }
+
+        void copyFrom(Columns src, int from, int to, int n) {
+            System.arraycopy(src.nanos, from, nanos, to, n);
+            System.arraycopy(src.x, from, x, to, n);
+            System.arraycopy(src.y, from, y, to, n);
+            System.arraycopy(src.z, from, z, to, n);
+            System.arraycopy(src.ox, from, ox, to, n);
+            System.arraycopy(src.oy, from, oy, to, n);
+            System.arraycopy(src.oz, from, oz, to, n);
+            System.arraycopy(src.ow, from, ow, to, n);
+            for (int k = 0; k < n; k++) setOriented(to + k, src.oriented(from + k));
+        }
+
+        boolean sameSample(int i, Columns o, int j) {
+            if (x[i] != o.x[j] || y[i] != o.y[j] || z[i] != o.z[j] || oriented(i) != o.oriented(j))
+                return false;
+            return !oriented(i) || (ox[i] == o.ox[j] && oy[i] == o.oy[j] && oz[i] == o.oz[j] && ow[i] == o.ow[j]);
+        }
+    }
+
+    /* ----------------- batch (ingest side) ----------------- */
+
+    /** Columnar accumulator for one ingest; sorted and de-duplicated before it is applied. */
+    public static final class Batch {
+        private Columns cols;
+        private int size;
+        private boolean sorted = true;
+
+        public Batch(int expected) {
+            cols = new Columns(Math.max(MIN_CAPACITY, expected));
+        }
+
+        public void add(long epochNanos, double x, double y, double z) {
+            int i = slot(epochNanos);
+            cols.x[i] = x;
+            cols.y[i] = y;
+            cols.z[i] = z;
+            cols.setOriented(i, false);
+        }
+
+        public void add(long epochNanos, double x, double y, double z, double ox, double oy, double oz, double ow) {
+            int i = slot(epochNanos);
+            cols.x[i] = x;
+            cols.y[i] = y;
+            cols.z[i] = z;
+            cols.ox[i] = ox;
+            cols.oy[i] = oy;
+            cols.oz[i] = oz;
+            cols.ow[i] = ow;
+            cols.setOriented(i, true);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private int slot(long epochNanos) {
+            if (size == cols.capacity())
+                cols.grow(size * 2);
+            if (size > 0 && epochNanos < cols.nanos[size - 1])
+                sorted = false;
+            cols.nanos[size] = epochNanos;
+            return size++;
+        }
+
+        /** Sorts by time (stable) and keeps the last sample for each timestamp. Returns the new size. */
+        int normalize() {
+            if (!sorted) {
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++) order[i] = i;
+                long[] nanos = cols.nanos;
+                Arrays.sort(order, (a, b) -> Long.compare(nanos[a], nanos[b]));
+                Columns next = new Columns(cols.capacity());
+                for (int i = 0; i < size; i++) next.copyFrom(cols, order[i], i, 1);
+                cols = next;
+                sorted = true;
+            }
+            int k = 0;
+            for (int i = 0; i < size; i++) {
+                if (k > 0 && cols.nanos[k - 1] == cols.nanos[i]) k--;
+                if (k != i) cols.copyFrom(cols, i, k, 1);
+                k++;
+            }
+            size = k;
+            return size;
+        }
+
+        /** Index of the first sample strictly after {@code epochNanos}. */
+        int firstAfter(long epochNanos) {
+            int at = Arrays.binarySearch(cols.nanos, 0, size, epochNanos);
+            return at >= 0 ? at + 1 : -at - 1;
+        }
+
+        /** Index of the first sample at or after {@code epochNanos}. */
+        int firstAtOrAfter(long epochNanos) {
+            int at = Arrays.binarySearch(cols.nanos, 0, size, epochNanos);
+            return at >= 0 ? at : -at - 1;
+        }
+    }
+
+    /* ----------------- read side ----------------- */
+
+    /**
+     * Immutable view of the trajectory at snapshot time. Primitive accessors avoid per-sample objects;
+     * the {@code List<TravelPoint>} face materializes points on demand for existing callers.
+     */
+    public static final class View extends AbstractList<TravelPoint> implements RandomAccess {
+        private final Columns cols;
+        private final int start, size;
+        private final long firstSeq;
+        private final long generation;
+
+        private View(Columns cols, int start, int end, long firstSeq, long generation) {
+            this.cols = cols;
+            this.start = start;
+            this.size = end - start;
+            this.firstSeq = firstSeq;
+            this.generation = generation;
+        }
+
+        @Override public int size() { return size; }
+
+        public long epochNanos(int i) { return cols.nanos[slot(i)]; }
+        public long epochMillis(int i) { return Math.floorDiv(epochNanos(i), 1_000_000L); }
+        public double x(int i) { return cols.x[slot(i)]; }
+        public double y(int i) { return cols.y[slot(i)]; }
+        public double z(int i) { return cols.z[slot(i)]; }
+        public boolean hasOrientation(int i) { return cols.oriented(slot(i)); }
+        public double ox(int i) { return cols.ox[slot(i)]; }
+        public double oy(int i) { return cols.oy[slot(i)]; }
+        public double oz(int i) { return cols.oz[slot(i)]; }
+        public double ow(int i) { return cols.ow[slot(i)]; }
+
+        /** Sequence number of sample 0; sequence numbers only grow within one generation. */
+        public long firstSeq() { return firstSeq; }
+        public long endSeq() { return firstSeq + size; }
+        public long generation() { return generation; }
+
+        @Override
+        public TravelPoint get(int i) {
+            int s = slot(i);
+            long nanos = cols.nanos[s];
+            Instant ts = Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+            if (!cols.oriented(s))
+                return new TravelPoint(ts, cols.x[s], cols.y[s], cols.z[s], null, null, null, null);
+            return new TravelPoint(ts, cols.x[s], cols.y[s], cols.z[s], cols.ox[s], cols.oy[s], cols.oz[s], cols.ow[s]);
+        }
+
+        private int slot(int i) {
+            Objects.checkIndex(i, size);
+            return start + i;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.swamp_portal.webapp.db;
+
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+/** Non-blocking twin of {@link UserRepo}, on the enhanced async client; no thread waits for DynamoDB. */
+@Repository
+public class AsyncUserRepo {
+    private final DynamoDbAsyncTable<UserItem> table;
+    public AsyncUserRepo(DynamoDbAsyncTable<UserItem> table) {
+        this.table = table;
+    }
+
+    /** Completes with false if the name is taken (or the write failed), like {@link UserRepo#createUser}. */
+    public CompletableFuture<Boolean> createUser(String username, String passwordHash) {
+        UserItem item = new UserItem();
+        item.setUsername(username);
+        item.setPasswordHash(passwordHash);
+        try {
+            return table.putItem(PutItemEnhancedRequest.builder(UserItem.class)
+                            .item(item)
+                            .conditionExpression(
+                                    Expression.builder()
+                                            .expression("attribute_not_exists(#u)")
+                                            .putExpressionName("#u","username")
+                                            .build())
+                            .build())
+                    .handle((ok, e) -> e == null);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /** Completes with null if there is no such user. */
+    public CompletableFuture<UserItem> get(String username) {
+        return table.getItem(Key.builder().partitionValue(username).build());
+    }
+}
@@ -1,10 +1,16 @@
 package com.swamp_portal.webapp.db;
 
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.*;
 import software.amazon.awssdk.enhanced.dynamodb.*;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
+import java.time.Duration;
+
 @Configuration
 public class DynamoEnhancedConfig {
     @Bean
@@ -16,4 +22,37 @@ public class DynamoEnhancedConfig {
     public DynamoDbTable<UserItem> usersTable(DynamoDbEnhancedClient enhanced) {
         return enhanced.table("Users", TableSchema.fromBean(UserItem.class));
     }
-}
\ No newline at end of file
+
+    /**
+     * Non-blocking HTTP client for {@link DynamoDbAsyncClient}: a bounded connection pool, and a bounded
+     * wait list in front of it so a slow table fails fast instead of piling up requests.
+     */
+    @Bean
+    public SdkAsyncHttpClient dynamoAsyncHttpClient(@Value("${ddb.async.max-connections:64}") int maxConnections,
+                                                    @Value("${ddb.async.max-pending:256}") int maxPending,
+                                                    @Value("${ddb.async.acquire-timeout-ms:2000}") long acquireTimeoutMs,
+                                                    @Value("${ddb.async.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                                    @Value("${ddb.async.read-timeout-ms:5000}") long readTimeoutMs,
+                                                    @Value("${ddb.async.max-idle-ms:60000}") long maxIdleMs) {
+        return NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxConnections)
+                .maxPendingConnectionAcquires(maxPending)
+                .connectionAcquisitionTimeout(Duration.ofMillis(acquireTimeoutMs))
+                .connectionTimeout(Duration.ofMillis(connectTimeoutMs))
+                .readTimeout(Duration.ofMillis(readTimeoutMs))
+                .writeTimeout(Duration.ofMillis(readTimeoutMs))
+                .connectionMaxIdleTime(Duration.ofMillis(maxIdleMs))
+                .tcpKeepAlive(true)
+                .build();
+    }
+
+    @Bean
+    public DynamoDbEnhancedAsyncClient enhancedAsync(DynamoDbAsyncClient base) {
+        return DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(base).build();
+    }
+
+    @Bean
+    public DynamoDbAsyncTable<UserItem> usersAsyncTable(DynamoDbEnhancedAsyncClient enhanced) {
+        return enhanced.table("Users", TableSchema.fromBean(UserItem.class));
+    }
+}
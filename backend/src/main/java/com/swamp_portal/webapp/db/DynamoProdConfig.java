@@ -5,7 +5,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 @Configuration
@@ -14,24 +16,42 @@ public class DynamoProdConfig {
 
     @Bean
     public DynamoDbClient dynamoDbClient() {
+        return DynamoDbClient
+                .builder()
+                .region(region())
+                .credentialsProvider(credentials())
+                .build();
+    }
+
+    @Bean
+    public DynamoDbAsyncClient dynamoDbAsyncClient(SdkAsyncHttpClient http) {
+        return DynamoDbAsyncClient
+                .builder()
+                .region(region())
+                .httpClient(http)
+                .credentialsProvider(credentials())
+                .build();
+    }
+
+    private static Region region() {
         String region = System.getenv("AWS_REGION");
-        String accessKey = System.getenv("AWS_ACCESS_KEY_ID");
-        String secretKey = System.getenv("AWS_SECRET_ACCESS_KEY");
-        String sessionToken = System.getenv("AWS_SESSION_TOKEN");
 
         if (region == null) {
             region = "us-east-1";
         }
+        return Region.of(region);
+    }
+
+    private static StaticCredentialsProvider credentials() {
+        String accessKey = System.getenv("AWS_ACCESS_KEY_ID");
+        String secretKey = System.getenv("AWS_SECRET_ACCESS_KEY");
+        String sessionToken = System.getenv("AWS_SESSION_TOKEN");
 
         if (accessKey == null || secretKey == null || sessionToken == null)
             throw new RuntimeException("Missing one or more AWS Credentials!");
 
-        return DynamoDbClient
-                .builder()
-                .region(Region.of(region))
-                .credentialsProvider(StaticCredentialsProvider.create(
-                        AwsSessionCredentials.create(accessKey, secretKey, sessionToken)
-                ))
-                .build();
+        return StaticCredentialsProvider.create(
+                AwsSessionCredentials.create(accessKey, secretKey, sessionToken)
+        );
     }
 }
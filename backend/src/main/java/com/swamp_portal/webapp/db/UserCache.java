@@ -0,0 +1,102 @@
+package com.swamp_portal.webapp.db;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through cache in front of {@link AsyncUserRepo}: bounded (least recently used entries go first), with a
+ * TTL per entry. Unknown usernames are cached too, for a shorter time, so repeated logins for accounts that
+ * do not exist stop costing a DynamoDB read each. Concurrent misses for one name share a single read.
+ * {@link #createUser} goes through the cache and drops the entry for that name.
+ */
+@Component
+public class UserCache {
+    /** {@code item == null} marks a username known not to exist. */
+    private record Entry(UserItem item, long expiresAt) {}
+
+    private final AsyncUserRepo repo;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final Map<String, Entry> entries;
+    private long invalidations; // guarded by entries; a read that raced an invalidation is not cached
+    private final Map<String, CompletableFuture<UserItem>> loading = new ConcurrentHashMap<>();
+
+    public UserCache(AsyncUserRepo repo,
+                     @Value("${users.cache.max-entries:10000}") int maxEntries,
+                     @Value("${users.cache.ttl-seconds:300}") long ttlSeconds,
+                     @Value("${users.cache.negative-ttl-seconds:30}") long negativeTtlSeconds) {
+        this.repo = repo;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, ttlSeconds));
+        this.negativeTtlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, negativeTtlSeconds));
+        int max = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > max;
+            }
+        };
+    }
+
+    /** The user, or null if there is none; completes immediately while the cached entry is fresh. */
+    public CompletableFuture<UserItem> get(String username) {
+        if (username == null) return CompletableFuture.completedFuture(null);
+        long now = System.currentTimeMillis();
+        long seen;
+        synchronized (entries) {
+            Entry e = entries.get(username);
+            if (e != null && now < e.expiresAt()) return CompletableFuture.completedFuture(e.item());
+            seen = invalidations;
+        }
+        CompletableFuture<UserItem> pending = loading.get(username);
+        if (pending != null) return pending;
+
+        CompletableFuture<UserItem> load = new CompletableFuture<>();
+        pending = loading.putIfAbsent(username, load);
+        if (pending != null) return pending;
+        CompletableFuture<UserItem> read;
+        try {
+            read = repo.get(username);
+        } catch (RuntimeException e) {
+            // the SDK can throw before it hands back a future (bad key, closed client)
+            loading.remove(username, load);
+            load.completeExceptionally(e);
+            return load;
+        }
+        read.whenComplete((item, err) -> {
+            loading.remove(username, load);
+            if (err != null) {
+                load.completeExceptionally(err);
+            } else {
+                put(username, item, now, seen);
+                load.complete(item);
+            }
+        });
+        return load;
+    }
+
+    public CompletableFuture<Boolean> createUser(String username, String passwordHash) {
+        return repo.createUser(username, passwordHash).whenComplete((created, err) -> invalidate(username));
+    }
+
+    public void invalidate(String username) {
+        synchronized (entries) {
+            entries.remove(username);
+            invalidations++;
+        }
+    }
+
+    private void put(String username, UserItem item, long now, long seen) {
+        long ttl = (item == null) ? negativeTtlMillis : ttlMillis;
+        if (ttl <= 0) return;
+        synchronized (entries) {
+            if (invalidations != seen) return;
+            entries.put(username, new Entry(item, now + ttl));
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.swamp_portal.webapp.history;
+
+import com.swamp_portal.webapp.data_format.PointSeries;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Long-retention position history per role, outside the live buffers: the {@code sub*_history} samples of
+ * every report, appended in time order to one file per role and UTC day under {@code history.dir}
+ * ({@code <role>/<yyyy-MM-dd>.pos}, see {@link #fileName}). Records are fixed-size (epoch nanos, x, y, z),
+ * so a sparse in-memory index holding the timestamp of every {@value #INDEX_STRIDE}th record is enough to
+ * seek to any instant; range reads then scan forward in bounded chunks.
+ * <p>
+ * Off by default; enabling it requires {@code history.dir}.
+ * <p>
+ * Appends come from the ingest worker only; queries may run concurrently from request threads.
+ */
+@Component
+public class PositionHistory {
+    private static final Logger log = LoggerFactory.getLogger(PositionHistory.class);
+
+    static final int RECORD = 8 + 3 * 8;
+    static final int INDEX_STRIDE = 256;
+    private static final int READ_CHUNK = 2048; // records per read during a query
+    private static final String SUFFIX = ".pos";
+
+    /** Receives query results in time order. */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(long epochNanos, double x, double y, double z) throws IOException;
+    }
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int retentionDays;
+    private final Map<String, Track> tracks = new ConcurrentHashMap<>();
+
+    public PositionHistory(@Value("${history.enabled:false}") boolean enabled,
+                           @Value("${history.dir:}") String dir,
+                           @Value("${history.retention-days:30}") int retentionDays) {
+        if (enabled && dir.isBlank())
+            throw new IllegalStateException("history.enabled=true needs history.dir");
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.retentionDays = Math.max(1, retentionDays);
+    }
+
+    /**
+     * Appends the samples of {@code hist} newer than the role's last stored one; older or repeated
+     * samples (reports overlap) are skipped. Failures are logged, not thrown.
+     */
+    public void append(String role, PointSeries hist) {
+        if (!enabled || role == null || hist == null || hist.isEmpty()) return;
+        try {
+            track(role).append(hist.sorted());
+        } catch (IOException | RuntimeException e) {
+            log.error("Position history append failed for role {}", role, e);
+        }
+    }
+
+    /**
+     * Streams the role's samples in {@code [fromNanos, toNanos]} to {@code sink}, at most one per
+     * {@code stepNanos} (0 = all). Memory use does not depend on the size of the range.
+     */
+    public void query(String role, long fromNanos, long toNanos, long stepNanos, Sink sink) throws IOException {
+        if (!enabled || role == null || fromNanos > toNanos) return;
+        Path roleDir = dir.resolve(fileName(role));
+        if (!tracks.containsKey(role) && !Files.isDirectory(roleDir)) return;
+
+        Track track = track(role);
+        LocalDate firstDay = day(fromNanos), lastDay = day(toNanos);
+        long next = fromNanos;
+        ByteBuffer buf = ByteBuffer.allocate(READ_CHUNK * RECORD);
+        for (DayFile f : track.days.subMap(firstDay, true, lastDay, true).values()) {
+            next = f.scan(fromNanos, toNanos, next, stepNanos, buf, sink);
+            if (next > toNanos) break;
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    private Track track(String role) {
+        return tracks.computeIfAbsent(role, r -> {
+            try {
+                return new Track(dir.resolve(fileName(r)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    static LocalDate day(long epochNanos) {
+        return LocalDate.ofEpochDay(Math.floorDiv(epochNanos, 86_400_000_000_000L));
+    }
+
+    /**
+     * Role labels come from devices; keep them to a safe file name. A role that is not one already gets a
+     * hash of the raw label appended, so "sub 1" and "sub_1" do not share a directory ({@code ~} never
+     * survives sanitizing, so hashed names cannot collide with plain ones).
+     */
+    static String fileName(String role) {
+        String safe = role.replaceAll("[^A-Za-z0-9_.-]", "_").replaceAll("^\\.+", "_");
+        if (!safe.isEmpty() && safe.equals(role)) return safe;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(role.getBytes(StandardCharsets.UTF_8));
+            return safe + "~" + HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE has SHA-256
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (Track t : tracks.values()) t.close();
+    }
+
+    /* ----------------- one role ----------------- */
+
+    private final class Track {
+        final Path roleDir;
+        final NavigableMap<LocalDate, DayFile> days = new ConcurrentSkipListMap<>();
+        long lastNanos = Long.MIN_VALUE; // ingest worker only
+
+        Track(Path roleDir) throws IOException {
+            this.roleDir = roleDir;
+            if (Files.isDirectory(roleDir)) {
+                try (Stream<Path> files = Files.list(roleDir)) {
+                    for (Path p : files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                        String name = p.getFileName().toString();
+                        days.put(LocalDate.parse(name.substring(0, name.length() - SUFFIX.length())), new DayFile(p));
+                    }
+                }
+                if (!days.isEmpty()) lastNanos = days.lastEntry().getValue().lastNanos();
+            }
+        }
+
+        void append(PointSeries hist) throws IOException {
+            int i = 0;
+            while (i < hist.size() && hist.epochNanos(i) <= lastNanos) i++;
+            while (i < hist.size()) {
+                // one write per day the batch touches
+                LocalDate d = day(hist.epochNanos(i));
+                int from = i;
+                long prev = lastNanos;
+                while (i < hist.size() && day(hist.epochNanos(i)).equals(d)) i++;
+                ByteBuffer buf = ByteBuffer.allocate((i - from) * RECORD);
+                int n = 0;
+                for (int k = from; k < i; k++) {
+                    long t = hist.epochNanos(k);
+                    if (t <= prev) continue; // duplicate timestamps within the report
+                    buf.putLong(t).putDouble(hist.x(k)).putDouble(hist.y(k)).putDouble(hist.z(k));
+                    prev = t;
+                    n++;
+                }
+                if (n == 0) continue;
+                buf.flip();
+                dayFile(d).append(buf, n);
+                lastNanos = prev;
+            }
+        }
+
+        private DayFile dayFile(LocalDate d) throws IOException {
+            DayFile f = days.get(d);
+            if (f != null) return f;
+            Files.createDirectories(roleDir);
+            f = new DayFile(roleDir.resolve(d + SUFFIX));
+            days.put(d, f);
+            // a new day: retire what fell out of retention
+            LocalDate cutoff = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+            for (var old : days.headMap(cutoff, false).entrySet()) {
+                days.remove(old.getKey());
+                old.getValue().close();
+                Files.deleteIfExists(old.getValue().path);
+            }
+            return f;
+        }
+
+        void close() {
+            days.values().forEach(DayFile::close);
+        }
+    }
+
+    /* ----------------- one day of one role ----------------- */
+
+    private static final class DayFile {
+        final Path path;
+        private FileChannel channel;
+        // guarded by this: committed record count and sparse index (timestamp of every INDEX_STRIDE-th record)
+        private long records;
+        private long[] index;
+        private int indexed = -1; // entries in index; -1 until built
+
+        DayFile(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.records = channel.size() / RECORD; // a torn last record is ignored and overwritten
+        }
+
+        synchronized void append(ByteBuffer buf, int n) throws IOException {
+            long at = records * RECORD;
+            while (buf.hasRemaining()) at += channel.write(buf, at);
+            if (indexed >= 0) {
+                for (long r = ceilStride(records); r < records + n; r += INDEX_STRIDE) {
+                    addIndex(buf.getLong((int) ((r - records) * RECORD)));
+                }
+            }
+            records += n;
+        }
+
+        synchronized long lastNanos() throws IOException {
+            if (records == 0) return Long.MIN_VALUE;
+            return readLong((records - 1) * RECORD);
+        }
+
+        /**
+         * Emits the records in {@code [from, to]} with timestamps at or after {@code next}, advancing
+         * {@code next} by {@code step} after each one. Returns the updated {@code next}, or
+         * {@code to + 1} once a record past {@code to} was seen.
+         */
+        long scan(long from, long to, long next, long step, ByteBuffer buf, Sink sink) throws IOException {
+            long end, start;
+            synchronized (this) {
+                ensureIndex();
+                end = records;
+                start = seek(from);
+            }
+            for (long r = start; r < end; ) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), (end - r) * RECORD));
+                long pos = r * RECORD;
+                while (buf.hasRemaining()) {
+                    int read = channel.read(buf, pos + buf.position());
+                    if (read < 0) break;
+                }
+                buf.flip();
+                if (buf.remaining() < RECORD) break; // file shorter than expected
+                while (buf.remaining() >= RECORD) {
+                    long t = buf.getLong();
+                    double x = buf.getDouble(), y = buf.getDouble(), z = buf.getDouble();
+                    r++;
+                    if (t > to) return to + 1;
+                    if (t < from || t < next) continue;
+                    sink.accept(t, x, y, z);
+                    next = (step > 0) ? t + step : t + 1;
+                }
+            }
+            return next;
+        }
+
+        /** First record of the stride that can contain {@code t}. */
+        private long seek(long t) {
+            int lo = 0, hi = indexed - 1, best = 0;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (index[mid] <= t) {
+                    best = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return (long) best * INDEX_STRIDE;
+        }
+
+        private void ensureIndex() throws IOException {
+            if (indexed >= 0) return;
+            index = new long[(int) Math.max(16, records / INDEX_STRIDE + 1)];
+            indexed = 0;
+            for (long r = 0; r < records; r += INDEX_STRIDE) addIndex(readLong(r * RECORD));
+        }
+
+        private void addIndex(long t) {
+            if (indexed == index.length) index = Arrays.copyOf(index, indexed * 2);
+            index[indexed++] = t;
+        }
+
+        private static long ceilStride(long r) {
+            return (r + INDEX_STRIDE - 1) / INDEX_STRIDE * INDEX_STRIDE;
+        }
+
+        private long readLong(long pos) throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(8);
+            while (b.hasRemaining() && channel.read(b, pos + b.position()) >= 0) { }
+            return b.getLong(0);
+        }
+
+        synchronized void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing left to flush: writes go straight to the channel
+            }
+        }
+    }
+}
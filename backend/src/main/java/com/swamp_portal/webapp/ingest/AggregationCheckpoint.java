@@ -0,0 +1,183 @@
+package com.swamp_portal.webapp.ingest;
+
+import com.swamp_portal.webapp.data_format.AggregationSnapshot;
+import com.swamp_portal.webapp.data_format.ReportAggregationService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Periodic checkpoint of the aggregation state in {@code checkpoint.dir}, so a restart shows the last
+ * plans right away instead of waiting for a telemetry replay or fresh plans. Off by default; enabling it
+ * requires the directory to be set.
+ * <p>
+ * The state is copied on the ingest worker ({@link ReportAggregationService#exportSnapshot()}, cheap) and
+ * encoded and written on this component's own thread. The file is written next to the current one and
+ * renamed over it, so a crash mid-write leaves the previous checkpoint intact.
+ * <p>
+ * File: {@code [long markMillis][snapshot][long crc32]}. {@code markMillis} is the time the copy was taken;
+ * every telemetry record appended from then on is not in the snapshot and is replayed on top of it
+ * (re-applying one that is, from the same millisecond, changes nothing).
+ */
+@Component
+public class AggregationCheckpoint {
+    private static final Logger log = LoggerFactory.getLogger(AggregationCheckpoint.class);
+    private static final String FILE = "aggregation.snap";
+
+    /** What {@link #load} restored: the roles and the telemetry time to replay from. */
+    public record Loaded(int roles, long markMillis) {}
+
+    private final boolean enabled;
+    private final Path file;
+    private final Path tmp;
+    private final long intervalSeconds;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService writer;
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    public AggregationCheckpoint(@Value("${checkpoint.enabled:false}") boolean enabled,
+                                 @Value("${checkpoint.dir:}") String dir,
+                                 @Value("${checkpoint.interval-seconds:30}") long intervalSeconds) {
+        if (enabled && dir.isBlank())
+            throw new IllegalStateException("checkpoint.enabled=true needs checkpoint.dir");
+        this.enabled = enabled;
+        this.file = Path.of(dir).resolve(FILE);
+        this.tmp = Path.of(dir).resolve(FILE + ".tmp");
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Restores the last checkpoint into {@code svc}; null if there is none or it is unusable, in which case
+     * the caller falls back to the telemetry replay window.
+     */
+    public Loaded load(ReportAggregationService svc) {
+        if (!enabled) return null;
+        long started = System.nanoTime();
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Cannot read aggregation checkpoint {}, starting without", file.toAbsolutePath(), e);
+            return null;
+        }
+        int body = bytes.length - 8;
+        CRC32 crc = new CRC32();
+        if (body > 8) crc.update(bytes, 0, body);
+        if (body <= 8 || ByteBuffer.wrap(bytes, body, 8).getLong() != crc.getValue()) {
+            log.warn("Aggregation checkpoint {} is damaged, starting without", file.toAbsolutePath());
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, body));
+            long mark = in.readLong();
+            int roles = svc.restoreSnapshot(in);
+            log.info("Restored {} role(s) from the checkpoint of {} in {} ms", roles, Instant.ofEpochMilli(mark),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            return new Loaded(roles, mark);
+        } catch (IOException e) {
+            // checksum matched, so this is a format this build cannot read
+            log.warn("Cannot restore aggregation checkpoint {}, starting without", file.toAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /** Calls {@code trigger} every {@code checkpoint.interval-seconds}; it should queue {@link #capture} on the ingest worker. */
+    void start(Runnable trigger) {
+        if (!enabled) return;
+        timer.scheduleWithFixedDelay(() -> {
+            if (!writing.get()) trigger.run(); // still writing the last one: skip a turn
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Copies the state (ingest worker only) and writes it in the background. */
+    void capture(ReportAggregationService svc) {
+        if (!enabled || !writing.compareAndSet(false, true)) return;
+        long mark = System.currentTimeMillis();
+        AggregationSnapshot snap = svc.exportSnapshot();
+        writer.execute(() -> {
+            try {
+                write(snap, mark);
+            } finally {
+                writing.set(false);
+            }
+        });
+    }
+
+    /** Copies and writes on the calling thread; for shutdown, once the ingest worker has stopped. */
+    void captureNow(ReportAggregationService svc) {
+        if (!enabled) return;
+        timer.shutdownNow();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        write(svc.exportSnapshot(), System.currentTimeMillis());
+    }
+
+    private void write(AggregationSnapshot snap, long mark) {
+        long started = System.nanoTime();
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+                CRC32 crc = new CRC32();
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fos, 1 << 16), crc));
+                out.writeLong(mark);
+                snap.writeTo(out);
+                out.flush();
+                new DataOutputStream(fos).writeLong(crc.getValue());
+                fos.getChannel().force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Checkpoint of {} role(s) written in {} ms", snap.roles(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException | RuntimeException e) {
+            log.error("Aggregation checkpoint failed", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+        writer.shutdown();
+    }
+}
@@ -0,0 +1,305 @@
+package com.swamp_portal.webapp.ingest;
+
+import com.swamp_portal.webapp.cluster.StreamBus;
+import com.swamp_portal.webapp.data_format.Plan;
+import com.swamp_portal.webapp.data_format.Report;
+import com.swamp_portal.webapp.data_format.ReportAggregationService;
+import com.swamp_portal.webapp.history.PositionHistory;
+import com.swamp_portal.webapp.stream.BroadcastScheduler;
+import com.swamp_portal.webapp.telemetry.TelemetryLog;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded ingest queue in front of {@link ReportAggregationService}. HTTP threads only enqueue; a single
+ * worker thread is the only writer of aggregation state. A full queue is reported to the caller
+ * (the controllers answer 429) instead of blocking.
+ * <p>
+ * The worker also appends every report and plan to the {@link TelemetryLog} before applying it, and its
+ * first task rebuilds the aggregation state from the log: the records since the last
+ * {@link AggregationCheckpoint}, which is loaded before the worker starts, or else the last
+ * {@code telemetry.log.replay-seconds}. The worker also takes the periodic checkpoints.
+ * <p>
+ * Lifecycle: the worker starts before the web server and stops after it. On stop, new submissions are
+ * refused and the worker finishes everything already accepted (bounded by {@code ingest.drain-timeout-seconds},
+ * and never interrupted, so log and history writes complete); only then is the last checkpoint taken.
+ * <p>
+ * What is submitted here is also published on the {@link StreamBus}; reports and plans arriving from other
+ * nodes go through the same worker (logged and applied, not re-published).
+ * <p>
+ * Metrics: {@code swamp.ingest.lag} (time queued) and {@code swamp.ingest.apply} (time on the worker, by kind),
+ * plus the queue depth and the counters from {@link Stats}.
+ */
+@Component
+public class IngestPipeline implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(IngestPipeline.class);
+
+    public record Stats(int depth, int capacity, long accepted, long rejected, long processed, long failed,
+                       long lastLagMillis, long maxLagMillis) {}
+
+    private record Task(Runnable work, long enqueuedNanos) {}
+
+    private static final Task STOP = new Task(() -> {}, 0);
+
+    private final ReportAggregationService svc;
+    private final BroadcastScheduler scheduler;
+    private final TelemetryLog telemetry;
+    private final PositionHistory history;
+    private final StreamBus bus;
+    private final AggregationCheckpoint checkpoint;
+    private final BlockingQueue<Task> queue;
+    private final int capacity;
+    private final long replaySeconds;
+    private final long drainTimeoutMillis;
+    private final Thread worker;
+    private volatile boolean accepting;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong remoteDropped = new AtomicLong();
+    private volatile long lastLagNanos;
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private final Timer lagTimer;
+    private final Timer reportTimer;
+    private final Timer reportsTimer;
+    private final Timer planTimer;
+
+    public IngestPipeline(ReportAggregationService svc, BroadcastScheduler scheduler, TelemetryLog telemetry,
+                          PositionHistory history, StreamBus bus, AggregationCheckpoint checkpoint,
+                          MeterRegistry meters,
+                          @Value("${ingest.queue-capacity:1024}") int capacity,
+                          @Value("${telemetry.log.replay-seconds:3600}") long replaySeconds,
+                          @Value("${ingest.drain-timeout-seconds:10}") long drainTimeoutSeconds) {
+        this.svc = svc;
+        this.scheduler = scheduler;
+        this.telemetry = telemetry;
+        this.history = history;
+        this.bus = bus;
+        this.checkpoint = checkpoint;
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.replaySeconds = replaySeconds;
+        this.drainTimeoutMillis = TimeUnit.SECONDS.toMillis(Math.max(1, drainTimeoutSeconds));
+        this.lagTimer = Timer.builder("swamp.ingest.lag").description("Time a task waited in the ingest queue")
+                .publishPercentileHistogram().register(meters);
+        this.reportTimer = applyTimer(meters, "report");
+        this.reportsTimer = applyTimer(meters, "reports");
+        this.planTimer = applyTimer(meters, "plan");
+        Gauge.builder("swamp.ingest.queue.depth", queue, BlockingQueue::size).register(meters);
+        FunctionCounter.builder("swamp.ingest.accepted", accepted, AtomicLong::get).register(meters);
+        FunctionCounter.builder("swamp.ingest.rejected", rejected, AtomicLong::get)
+                .description("Submissions refused because the queue was full").register(meters);
+        FunctionCounter.builder("swamp.ingest.failed", failed, AtomicLong::get).register(meters);
+        FunctionCounter.builder("swamp.ingest.remote.dropped", remoteDropped, AtomicLong::get)
+                .description("Messages from other nodes dropped on a full queue").register(meters);
+        this.worker = new Thread(this::run, "ingest-worker");
+        this.worker.setDaemon(true);
+    }
+
+    /** Restores the checkpoint and starts the worker; before the web server takes any request. */
+    @Override
+    public void start() {
+        AggregationCheckpoint.Loaded loaded = checkpoint.load(svc);
+        // runs before anything submitted over HTTP
+        queue.add(new Task(() -> replay(loaded, replaySeconds), System.nanoTime()));
+        accepting = true;
+        worker.start();
+        bus.subscribe(this::onBusMessage);
+        checkpoint.start(() -> submit(() -> checkpoint.capture(svc)));
+    }
+
+    /** Refuses new work, lets the worker drain what was accepted, then takes the last checkpoint. */
+    @Override
+    public void stop() {
+        accepting = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+        try {
+            if (queue.offer(STOP, drainTimeoutMillis, TimeUnit.MILLISECONDS))
+                worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            log.warn("Ingest worker still busy after {} ms, {} task(s) not applied, no final checkpoint",
+                    drainTimeoutMillis, queue.size());
+            return;
+        }
+        // the worker is gone, so this thread is the only writer now: apply what raced in behind STOP
+        for (Task task; (task = queue.poll()) != null; ) execute(task);
+        checkpoint.captureNow(svc);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return accepting;
+    }
+
+    /** Below the web server's phases: started before it, stopped after its graceful shutdown. */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    /** Queues a report; false if the queue is full. */
+    public boolean submitReport(Report report) {
+        return submit(() -> {
+            applyReport(report);
+            bus.publish(StreamBus.Kind.REPORT, report);
+        });
+    }
+
+    /**
+     * Queues a chunk of a batch upload. Reports are applied in order but not published;
+     * the batch ends with {@link #flush()} so it goes out as a single frame.
+     */
+    public boolean submitReports(List<Report> reports) {
+        return submit(() -> {
+            applyReports(reports);
+            bus.publish(StreamBus.Kind.REPORTS, reports);
+        });
+    }
+
+    /** Publishes once everything queued so far has been applied. */
+    public void flush() {
+        if (!submit(scheduler::flushNow)) scheduler.markDirty(); // full queue: next tick picks it up
+    }
+
+    /** Queues a plan; false if the queue is full. New plans are flushed to the stream right away. */
+    public boolean submitPlan(Plan plan) {
+        return submit(() -> {
+            applyPlan(plan);
+            bus.publish(StreamBus.Kind.PLAN, plan);
+        });
+    }
+
+    /** Reports and plans from other nodes; a full queue drops them (there is no caller to answer 429). */
+    @SuppressWarnings("unchecked")
+    private void onBusMessage(StreamBus.Message m) {
+        boolean queued = switch (m.kind()) {
+            case REPORT -> submit(() -> applyReport((Report) m.body()));
+            case REPORTS -> submit(() -> {
+                applyReports((List<Report>) m.body());
+                scheduler.markDirty(); // the sender's flush does not travel; the next tick publishes
+            });
+            case PLAN -> submit(() -> applyPlan((Plan) m.body()));
+            case STATE, BROADCAST -> true; // not ingest
+        };
+        if (!queued && remoteDropped.incrementAndGet() % 100 == 1) {
+            log.warn("Ingest queue full, {} message(s) from other nodes dropped so far", remoteDropped.get());
+        }
+    }
+
+    private static Timer applyTimer(MeterRegistry meters, String kind) {
+        return Timer.builder("swamp.ingest.apply").tag("kind", kind)
+                .description("Worker time to log and aggregate one submission")
+                .publishPercentileHistogram().register(meters);
+    }
+
+    private void applyReport(Report report) {
+        long started = System.nanoTime();
+        telemetry.append(report);
+        apply(report);
+        scheduler.markDirty();
+        reportTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private void applyReports(List<Report> reports) {
+        long started = System.nanoTime();
+        for (Report report : reports) {
+            telemetry.append(report);
+            apply(report);
+        }
+        reportsTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private void applyPlan(Plan plan) {
+        long started = System.nanoTime();
+        telemetry.append(plan);
+        svc.ingestPlan(plan);
+        scheduler.flushNow();
+        planTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private void apply(Report report) {
+        svc.ingestReport(report);
+        svc.applyAvgDeviationFromReport(report);
+        history.append(report.getSub0Role(), report.getSub0History());
+        history.append(report.getSub1Role(), report.getSub1History());
+        history.append(report.getSub2Role(), report.getSub2History());
+    }
+
+    private void replay(AggregationCheckpoint.Loaded loaded, long replaySeconds) {
+        if (loaded != null) scheduler.flushNow(); // checkpoint state goes out before the replay
+        if (!telemetry.enabled() || (loaded == null && replaySeconds <= 0)) return;
+        long since = (loaded != null) ? loaded.markMillis() : System.currentTimeMillis() - replaySeconds * 1000;
+        long started = System.nanoTime();
+        int n = telemetry.replay(since, entry -> {
+            switch (entry.type()) {
+                case REPORT -> apply((Report) entry.value());
+                case PLAN -> svc.ingestPlan((Plan) entry.value());
+            }
+        });
+        if (n > 0) {
+            log.info("Replayed {} telemetry records in {} ms", n, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            scheduler.flushNow();
+        }
+    }
+
+    /** Queues arbitrary work for the aggregation worker; false if the queue is full. */
+    public boolean submit(Runnable work) {
+        if (accepting && queue.offer(new Task(work, System.nanoTime()))) {
+            accepted.incrementAndGet();
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    public Stats stats() {
+        return new Stats(queue.size(), capacity, accepted.get(), rejected.get(), processed.get(), failed.get(),
+                TimeUnit.NANOSECONDS.toMillis(lastLagNanos), TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get()));
+    }
+
+    private void run() {
+        while (true) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == STOP)
+                return;
+            execute(task);
+        }
+    }
+
+    private void execute(Task task) {
+        long lag = System.nanoTime() - task.enqueuedNanos();
+        lastLagNanos = lag;
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        lagTimer.record(lag, TimeUnit.NANOSECONDS);
+        try {
+            task.work().run();
+            processed.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            log.error("Ingest task failed", e);
+        }
+    }
+}
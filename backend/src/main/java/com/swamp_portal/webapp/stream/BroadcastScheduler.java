@@ -0,0 +1,70 @@
+package com.swamp_portal.webapp.stream;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decouples ingest rate from fan-out rate: ingest only marks the aggregation state dirty, and at most one
+ * frame per tick ({@code stream.tick-hz}) is published. Priority changes such as new plans skip the wait.
+ * All publishes happen on the single scheduler thread; {@code stream.tick-hz=0} publishes inline instead.
+ */
+@Component
+public class BroadcastScheduler {
+    private static final Logger log = LoggerFactory.getLogger(BroadcastScheduler.class);
+
+    private final StreamPublisher publisher;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService ticker;
+
+    public BroadcastScheduler(StreamPublisher publisher, @Value("${stream.tick-hz:20}") double tickHz) {
+        this.publisher = publisher;
+        if (tickHz > 0) {
+            this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "stream-tick");
+                t.setDaemon(true);
+                return t;
+            });
+            long periodMicros = Math.max(1, Math.round(1_000_000 / tickHz));
+            ticker.scheduleAtFixedRate(this::flushIfDirty, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+        } else {
+            this.ticker = null;
+        }
+    }
+
+    /** Something changed; it goes out with the next tick. */
+    public void markDirty() {
+        dirty.set(true);
+        if (ticker == null) flushIfDirty();
+    }
+
+    /** Something changed that should not wait for the next tick. */
+    public void flushNow() {
+        dirty.set(true);
+        if (ticker == null) flushIfDirty();
+        else ticker.execute(this::flushIfDirty);
+    }
+
+    private void flushIfDirty() {
+        if (!dirty.getAndSet(false))
+            return;
+        try {
+            publisher.publish();
+        } catch (RuntimeException e) {
+            // never let one bad frame cancel the periodic task
+            log.error("Stream publish failed", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (ticker != null) ticker.shutdownNow();
+    }
+}
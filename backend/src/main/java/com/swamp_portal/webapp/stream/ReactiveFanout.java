@@ -0,0 +1,107 @@
+package com.swamp_portal.webapp.stream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Reactive counterpart of {@link SseFanout}: one multicast sink per {@link StreamVariant} that replays its
+ * latest frame, so a subscriber always starts from the current state. A slow subscriber holds back at most
+ * two frames, the one in line to be written and the newest after it; anything in between is dropped (latest
+ * wins). Heartbeat comments come every {@code stream.reactive.heartbeat-ms} from one shared timer. Nothing
+ * here holds a thread per subscriber. Subscribers dropped by a failed write count in
+ * {@code swamp.stream.send.failures} (transport {@code rx}, mode {@code snapshot}, reason {@code write}).
+ * <p>
+ * {@link #subscribe} and {@link #publish} must be called under the {@link StreamPublisher} lock.
+ */
+@Component
+public class ReactiveFanout {
+    private static final ServerSentEvent<String> HEARTBEAT = ServerSentEvent.<String>builder().comment("heartbeat").build();
+
+    private static final class Channel {
+        final Sinks.Many<ServerSentEvent<String>> sink = Sinks.many().replay().latest();
+        final AtomicInteger listeners = new AtomicInteger();
+        long version = -1; // version of the frame the sink replays
+    }
+
+    private final Map<StreamVariant, Channel> channels = new ConcurrentHashMap<>();
+    // one-off messages that are not the current state, so they must not be replayed
+    private final Sinks.Many<ServerSentEvent<String>> oneOff = Sinks.many().multicast().directBestEffort();
+    private final Flux<ServerSentEvent<String>> heartbeat;
+    private final Counter writeFailures;
+
+    public ReactiveFanout(@Value("${stream.reactive.heartbeat-ms:15000}") long heartbeatMs, MeterRegistry meters) {
+        Duration every = Duration.ofMillis(Math.max(100, heartbeatMs));
+        this.heartbeat = Flux.interval(every, every).map(i -> HEARTBEAT).share();
+        Gauge.builder("swamp.stream.subscribers", this, ReactiveFanout::subscriberCount).tag("transport", "rx")
+                .register(meters);
+        this.writeFailures = SseFanout.sendFailures(meters, "rx", StreamMode.SNAPSHOT, "write");
+    }
+
+    /**
+     * Events for one subscriber: {@code greeting}, the state as of {@code version} ({@code current} is asked
+     * for it only if the channel is behind), then every later state plus heartbeats.
+     */
+    public Flux<ServerSentEvent<String>> subscribe(StreamVariant variant, long version, Supplier<SseFrame> current,
+                                                   SseFrame greeting) {
+        Channel ch = channels.computeIfAbsent(variant, v -> new Channel());
+        // counted before the caller releases the lock, so the next publish already includes this subscriber
+        ch.listeners.incrementAndGet();
+        if (ch.version != version) emit(ch, current.get(), version);
+
+        Flux<ServerSentEvent<String>> live = Flux.merge(1,
+                ch.sink.asFlux().onBackpressureLatest(),
+                oneOff.asFlux().onBackpressureLatest(),
+                heartbeat.onBackpressureDrop());
+        return Flux.just(greeting.toServerSentEvent())
+                .concatWith(live)
+                .doFinally(signal -> {
+                    ch.listeners.decrementAndGet();
+                    // MVC cancels the subscription when a write fails (client gone); completion is our shutdown
+                    if (signal != SignalType.ON_COMPLETE) writeFailures.increment();
+                });
+    }
+
+    /** Pushes {@code version} to every variant that has subscribers; the others catch up on their next subscribe. */
+    public void publish(long version, Function<StreamVariant, SseFrame> frames) {
+        channels.forEach((variant, ch) -> {
+            if (ch.listeners.get() > 0) emit(ch, frames.apply(variant), version);
+        });
+    }
+
+    /** Sends {@code frame} to everyone connected now, without making it the replayed state. */
+    public void broadcast(SseFrame frame) {
+        oneOff.tryEmitNext(frame.toServerSentEvent());
+    }
+
+    public int subscriberCount() {
+        int n = 0;
+        for (Channel ch : channels.values()) n += ch.listeners.get();
+        return n;
+    }
+
+    private static void emit(Channel ch, SseFrame frame, long version) {
+        ch.sink.tryEmitNext(frame.toServerSentEvent());
+        ch.version = version;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        channels.values().forEach(ch -> ch.sink.tryEmitComplete());
+        oneOff.tryEmitComplete();
+    }
+}
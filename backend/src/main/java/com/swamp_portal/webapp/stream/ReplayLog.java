@@ -0,0 +1,57 @@
+package com.swamp_portal.webapp.stream;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Bounded in-memory log of the most recent contiguous run of delta frames, by version.
+ * Not thread-safe; {@link StreamPublisher} guards it.
+ */
+final class ReplayLog {
+    private record Entry(long version, SseFrame frame) {}
+
+    private final int maxFrames;
+    private final long maxBytes;
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private long bytes;
+
+    ReplayLog(int maxFrames, long maxBytes) {
+        this.maxFrames = maxFrames;
+        this.maxBytes = maxBytes;
+    }
+
+    /** Appends the delta that produced {@code version}; the caller guarantees versions are contiguous. */
+    void append(long version, SseFrame frame) {
+        if (maxFrames <= 0)
+            return;
+        entries.addLast(new Entry(version, frame));
+        bytes += frame.bytes().length;
+        while (entries.size() > maxFrames || (bytes > maxBytes && entries.size() > 1)) {
+            bytes -= entries.removeFirst().frame().bytes().length;
+        }
+    }
+
+    /** Forgets everything; called when the delta chain breaks. */
+    void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Frames that take a client from {@code lastSeen} to {@code current}, or null if the log no longer
+     * covers that range (the client then needs a full snapshot).
+     */
+    List<SseFrame> since(long lastSeen, long current) {
+        if (lastSeen >= current)
+            return (lastSeen == current) ? List.of() : null;
+        if (entries.isEmpty() || entries.peekFirst().version() > lastSeen + 1 || entries.peekLast().version() != current)
+            return null;
+        List<SseFrame> out = new ArrayList<>((int) (current - lastSeen));
+        for (Entry e : entries) {
+            if (e.version() > lastSeen) out.add(e.frame());
+        }
+        return out;
+    }
+}
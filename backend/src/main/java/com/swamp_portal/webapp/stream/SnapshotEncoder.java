@@ -0,0 +1,76 @@
+package com.swamp_portal.webapp.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * One-shot encodings of the current stream state for {@code GET /api/snapshot}: JSON or CBOR, any
+ * {@link StreamVariant}, optionally gzipped. Each variant is encoded (and compressed) once per version
+ * and served from memory until the state moves on.
+ */
+@Component
+public class SnapshotEncoder {
+    public static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    private static final int GZIP_MIN_BYTES = 1024; // below this gzip mostly adds its header
+
+    public record Encoded(long version, MediaType type, boolean gzip, byte[] bytes) {}
+
+    private final StreamPublisher publisher;
+    private final ObjectMapper json;
+    private final CBORMapper cbor = new CBORMapper();
+
+    // guarded by this
+    private long cachedVersion = Long.MIN_VALUE;
+    private final Map<String, Encoded> cache = new HashMap<>();
+
+    public SnapshotEncoder(StreamPublisher publisher, ObjectMapper json) {
+        this.publisher = publisher;
+        this.json = json;
+    }
+
+    /** @param gzip whether the client accepts gzip; small payloads are still sent uncompressed */
+    public synchronized Encoded encode(StreamVariant variant, boolean asCbor, boolean gzip) {
+        String key = variant.format() + "/" + variant.maxPoints() + (asCbor ? "/cbor" : "/json") + (gzip ? "/gzip" : "");
+        if (publisher.version() == cachedVersion) {
+            Encoded hit = cache.get(key);
+            if (hit != null) return hit;
+        }
+
+        StreamPublisher.Snapshot snap = publisher.snapshot(variant);
+        if (snap.version() != cachedVersion) {
+            cache.clear();
+            cachedVersion = snap.version();
+        }
+        byte[] bytes;
+        try {
+            bytes = asCbor ? cbor.writeValueAsBytes(snap.payload()) : json.writeValueAsBytes(snap.payload());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode snapshot", e);
+        }
+        boolean compress = gzip && bytes.length >= GZIP_MIN_BYTES;
+        Encoded out = new Encoded(snap.version(), asCbor ? CBOR : MediaType.APPLICATION_JSON, compress,
+                compress ? gzip(bytes) : bytes);
+        cache.put(key, out);
+        return out;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(buf)) {
+            gz.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory, does not happen
+        }
+        return buf.toByteArray();
+    }
+}
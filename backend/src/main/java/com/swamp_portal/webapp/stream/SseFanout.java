@@ -0,0 +1,177 @@
+package com.swamp_portal.webapp.stream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Decouples broadcasting from socket writes: {@link #broadcast} only enqueues, and each subscriber's
+ * queue is drained by its own writer task, so a slow client can only fall behind itself.
+ * <p>
+ * Metrics: {@code swamp.stream.subscribers}, {@code swamp.stream.frames.dropped} (queued frames superseded
+ * when a client fell behind) and {@code swamp.stream.send.failures} by reason and {@link StreamMode}; the
+ * client id is logged, not tagged, to keep the series count fixed.
+ */
+@Component
+public class SseFanout {
+    private static final Logger log = LoggerFactory.getLogger(SseFanout.class);
+
+    private final Map<Long, SseSubscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    // writers block on socket I/O, so one virtual thread per active drain
+    private final ExecutorService writers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("sse-writer-", 0).factory());
+
+    private final int queueCapacity;
+    private final int maxOverflows;
+    private final Counter dropped;
+    private final Map<StreamMode, Counter> slowClients;
+    private final Map<StreamMode, Counter> resyncFailures;
+    private final Map<StreamMode, Counter> writeFailures;
+
+    public SseFanout(@Value("${stream.fanout.queue-capacity:16}") int queueCapacity,
+                     @Value("${stream.fanout.max-overflows:8}") int maxOverflows,
+                     MeterRegistry meters) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxOverflows = Math.max(0, maxOverflows);
+        Gauge.builder("swamp.stream.subscribers", subscribers, Map::size).tag("transport", "sse").register(meters);
+        this.dropped = Counter.builder("swamp.stream.frames.dropped").tag("transport", "sse").register(meters);
+        this.slowClients = sendFailures(meters, "slow");
+        this.resyncFailures = sendFailures(meters, "resync");
+        this.writeFailures = sendFailures(meters, "write");
+    }
+
+    private static Map<StreamMode, Counter> sendFailures(MeterRegistry meters, String reason) {
+        Map<StreamMode, Counter> byMode = new EnumMap<>(StreamMode.class);
+        for (StreamMode mode : StreamMode.values()) byMode.put(mode, sendFailures(meters, "sse", mode, reason));
+        return byMode;
+    }
+
+    static Counter sendFailures(MeterRegistry meters, String transport, StreamMode mode, String reason) {
+        return Counter.builder("swamp.stream.send.failures").tag("transport", transport)
+                .tag("mode", mode.name().toLowerCase(Locale.ROOT)).tag("reason", reason)
+                .description("Stream clients disconnected by the server").register(meters);
+    }
+
+    public SseSubscriber register(SseEmitter emitter, StreamMode mode, StreamVariant variant) {
+        SseSubscriber sub = new SseSubscriber(ids.incrementAndGet(), emitter, mode, variant, queueCapacity);
+        subscribers.put(sub.id(), sub);
+        emitter.onTimeout(() -> remove(sub));
+        emitter.onCompletion(() -> remove(sub));
+        emitter.onError(err -> remove(sub));
+        return sub;
+    }
+
+    /** Queues {@code frame} for every subscriber; never blocks on client I/O. */
+    public void broadcast(SseFrame frame) {
+        for (SseSubscriber sub : subscribers.values()) send(sub, frame, null);
+    }
+
+    /**
+     * Queues {@code frame} for the subscribers in {@code mode} and {@code variant}. {@code resync} supplies
+     * a full frame for delta subscribers whose queue overflowed; it is called at most once per subscriber.
+     */
+    public void broadcast(StreamMode mode, StreamVariant variant, SseFrame frame, Supplier<SseFrame> resync) {
+        for (SseSubscriber sub : subscribers.values()) {
+            if (sub.mode() == mode && sub.variant().equals(variant)) send(sub, frame, resync);
+        }
+    }
+
+    public void send(SseSubscriber sub, SseFrame frame) {
+        send(sub, frame, null);
+    }
+
+    public void send(SseSubscriber sub, SseFrame frame, Supplier<SseFrame> resync) {
+        switch (sub.offer(frame, maxOverflows)) {
+            case OVERFLOWED -> {
+                slowClients.get(sub.mode()).increment();
+                log.info("Disconnecting slow stream client {} ({} frames queued)", sub.id(), sub.queued());
+                disconnect(sub);
+                return;
+            }
+            case NEEDS_RESYNC -> {
+                dropped.increment();
+                if (resync == null) {
+                    resyncFailures.get(sub.mode()).increment();
+                    disconnect(sub);
+                    return;
+                }
+                sub.resync(resync.get());
+            }
+            case COALESCED -> dropped.increment();
+            case QUEUED -> { }
+        }
+        if (sub.startDrain()) writers.execute(() -> drain(sub));
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    public boolean hasSubscribers(StreamMode mode, StreamVariant variant) {
+        for (SseSubscriber sub : subscribers.values()) {
+            if (sub.mode() == mode && sub.variant().equals(variant)) return true;
+        }
+        return false;
+    }
+
+    /** Distinct variants among the subscribers in {@code mode}. */
+    public Set<StreamVariant> variants(StreamMode mode) {
+        Set<StreamVariant> out = new HashSet<>();
+        for (SseSubscriber sub : subscribers.values()) {
+            if (sub.mode() == mode) out.add(sub.variant());
+        }
+        return out;
+    }
+
+    private void drain(SseSubscriber sub) {
+        SseFrame frame;
+        while ((frame = sub.next()) != null) {
+            try {
+                frame.sendTo(sub.emitter());
+            } catch (IOException | IllegalStateException err) {
+                // client went away (or the emitter already completed)
+                writeFailures.get(sub.mode()).increment();
+                disconnect(sub);
+                return;
+            }
+        }
+    }
+
+    private void disconnect(SseSubscriber sub) {
+        remove(sub);
+        try {
+            sub.emitter().complete();
+        } catch (RuntimeException ignored) {
+            // already completed
+        }
+    }
+
+    private void remove(SseSubscriber sub) {
+        if (sub.close()) subscribers.remove(sub.id());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.values().forEach(this::disconnect);
+        writers.shutdownNow();
+    }
+}
@@ -0,0 +1,93 @@
+package com.swamp_portal.webapp.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * One server-sent event, encoded to wire bytes exactly once and then written as-is to every subscriber.
+ * Strings go out verbatim (like {@code SseEmitter.event().data(String)}), anything else as JSON.
+ */
+public final class SseFrame {
+    private final String event;
+    private final String id;
+    private final String data;
+    private final byte[] bytes;
+    private final boolean selfContained;
+    private volatile ServerSentEvent<String> sse; // built on first use, then shared
+
+    private SseFrame(String event, String id, String data, byte[] bytes, boolean selfContained) {
+        this.event = event;
+        this.id = id;
+        this.data = data;
+        this.bytes = bytes;
+        this.selfContained = selfContained;
+    }
+
+    /** A frame that stands on its own (full state, or not state at all); it supersedes queued frames. */
+    public static SseFrame of(ObjectMapper mapper, String event, String id, Object data) {
+        return encode(mapper, event, id, data, true);
+    }
+
+    /** A "delta" frame; only meaningful on top of every frame sent before it. */
+    public static SseFrame delta(ObjectMapper mapper, String id, Object data) {
+        return encode(mapper, "delta", id, data, false);
+    }
+
+    private static SseFrame encode(ObjectMapper mapper, String event, String id, Object data, boolean selfContained) {
+        String body;
+        if (data == null) {
+            body = "";
+        } else if (data instanceof CharSequence text) {
+            body = text.toString();
+        } else {
+            try {
+                body = mapper.writeValueAsString(data);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Stream payload is not serializable", e);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(body.length() + 64);
+        if (event != null) sb.append("event:").append(event).append('\n');
+        if (id != null) sb.append("id:").append(id).append('\n');
+        // multi-line payloads need one data: field per line
+        for (String line : body.split("\n", -1)) sb.append("data:").append(line).append('\n');
+        sb.append('\n');
+        return new SseFrame(event, id, body, sb.toString().getBytes(StandardCharsets.UTF_8), selfContained);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    public boolean selfContained() {
+        return selfContained;
+    }
+
+    /** The same event for reactive streams; the payload string is shared, not re-serialized. */
+    public ServerSentEvent<String> toServerSentEvent() {
+        ServerSentEvent<String> e = sse;
+        if (e == null) {
+            e = ServerSentEvent.<String>builder().event(event).id(id).data(data).build();
+            sse = e;
+        }
+        return e;
+    }
+
+    /** Writes the pre-encoded bytes; no per-subscriber serialization happens here. */
+    public void sendTo(SseEmitter emitter) throws IOException {
+        emitter.send(Set.of(new ResponseBodyEmitter.DataWithMediaType(bytes, MediaType.TEXT_PLAIN)));
+    }
+}
@@ -0,0 +1,105 @@
+package com.swamp_portal.webapp.stream;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/** One connected dashboard: an emitter plus its bounded outbound queue. */
+public final class SseSubscriber {
+    public enum Offer { QUEUED, COALESCED, NEEDS_RESYNC, OVERFLOWED }
+
+    private final long id;
+    private final SseEmitter emitter;
+    private final StreamMode mode;
+    private final StreamVariant variant;
+    private final int capacity;
+    private final Deque<SseFrame> queue;
+
+    private boolean draining;
+    private boolean closed;
+    private int overflows; // consecutive, reset once the queue drains
+
+    SseSubscriber(long id, SseEmitter emitter, StreamMode mode, StreamVariant variant, int capacity) {
+        this.id = id;
+        this.emitter = emitter;
+        this.mode = mode;
+        this.variant = variant;
+        this.capacity = capacity;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 16));
+    }
+
+    public long id() {
+        return id;
+    }
+
+    public SseEmitter emitter() {
+        return emitter;
+    }
+
+    public StreamMode mode() {
+        return mode;
+    }
+
+    public StreamVariant variant() {
+        return variant;
+    }
+
+    /**
+     * Queues a frame. When the queue is full, the queued frames are dropped in favour of {@code frame}
+     * if it is self-contained (a full state supersedes everything before it), as long as the subscriber
+     * has not overflowed more than {@code maxOverflows} times in a row. A delta cannot replace anything:
+     * the queue is dropped and {@link Offer#NEEDS_RESYNC} asks the caller for a full frame instead.
+     */
+    synchronized Offer offer(SseFrame frame, int maxOverflows) {
+        if (closed)
+            return Offer.QUEUED;
+        if (queue.size() < capacity) {
+            queue.addLast(frame);
+            return Offer.QUEUED;
+        }
+        if (++overflows > maxOverflows)
+            return Offer.OVERFLOWED;
+        queue.clear();
+        if (!frame.selfContained())
+            return Offer.NEEDS_RESYNC;
+        queue.addLast(frame);
+        return Offer.COALESCED;
+    }
+
+    /** Queues a full frame after {@link Offer#NEEDS_RESYNC}; the queue was just emptied. */
+    synchronized void resync(SseFrame frame) {
+        if (!closed) queue.addLast(frame);
+    }
+
+    /** Claims the writer role; only one drain runs per subscriber at a time. */
+    synchronized boolean startDrain() {
+        if (draining || closed || queue.isEmpty())
+            return false;
+        draining = true;
+        return true;
+    }
+
+    /** Next frame to write, or null (releasing the writer role) once the queue is empty. */
+    synchronized SseFrame next() {
+        SseFrame frame = closed ? null : queue.pollFirst();
+        if (frame == null) {
+            draining = false;
+            overflows = 0;
+        }
+        return frame;
+    }
+
+    synchronized int queued() {
+        return queue.size();
+    }
+
+    /** Returns false if it was already closed. */
+    synchronized boolean close() {
+        if (closed)
+            return false;
+        closed = true;
+        queue.clear();
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package com.swamp_portal.webapp.stream;
+
+/** How {@code travel_plan} is laid out in the frames a subscriber receives. */
+public enum StreamFormat {
+    /** one {@code {timestamp, position, orientation}} object per point */
+    JSON,
+    /**
+     * columns per plan: {@code t0} (epoch millis), {@code dt} (millis since the previous point),
+     * {@code xyz} (3 doubles per point) and, if any point has one, {@code q} (4 per point, null where missing)
+     */
+    PACKED;
+
+    public static StreamFormat parse(String value) {
+        return "packed".equalsIgnoreCase(value) ? PACKED : JSON;
+    }
+
+    public boolean packed() {
+        return this == PACKED;
+    }
+}
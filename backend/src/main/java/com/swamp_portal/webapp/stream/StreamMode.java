@@ -0,0 +1,13 @@
+package com.swamp_portal.webapp.stream;
+
+/** What a subscriber receives after the initial full snapshot. */
+public enum StreamMode {
+    /** a full snapshot ("message" event) on every change */
+    SNAPSHOT,
+    /** versioned "delta" events describing only what changed */
+    DELTA;
+
+    public static StreamMode parse(String value) {
+        return "delta".equalsIgnoreCase(value) ? DELTA : SNAPSHOT;
+    }
+}
@@ -0,0 +1,257 @@
+package com.swamp_portal.webapp.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swamp_portal.webapp.cluster.StreamBus;
+import com.swamp_portal.webapp.data_format.ReportAggregationService;
+import com.swamp_portal.webapp.data_format.StreamState;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Turns aggregation state into stream frames. Every publish gets the next version, which is also the
+ * SSE event id; snapshot subscribers receive the full state ("message"), delta subscribers one full
+ * state on connect and then "delta" events against the previous version. Frames are built per
+ * {@link StreamFormat}, and each frame kind is only encoded if someone is listening for it.
+ * <p>
+ * Recent deltas are kept in a {@link ReplayLog}, so a client reconnecting with {@code Last-Event-ID}
+ * only gets what it missed. Deltas keep being built for {@code stream.replay.linger-ms} after the last
+ * delta subscriber leaves, which is what makes a reconnect after a short drop replayable.
+ * <p>
+ * Reactive subscribers ({@link #reactiveStream}) get the same snapshot frames through a {@link ReactiveFanout}.
+ * <p>
+ * Admin payloads ({@link #publish(Object)}, {@link #broadcast}) are passed on to the other nodes over the
+ * {@link StreamBus}; aggregation state is not, every node builds it from the replicated ingest.
+ * <p>
+ * {@code swamp.stream.publish} times each publish under the lock (capture, encode, enqueue), by kind.
+ */
+@Component
+public class StreamPublisher {
+    private static final StreamFormat[] FORMATS = StreamFormat.values();
+
+    private final ReportAggregationService svc;
+    private final SseFanout fanout;
+    private final ReactiveFanout reactive;
+    private final ObjectMapper mapper;
+    private final StreamBus bus;
+    private final Timer stateTimer;
+    private final Timer payloadTimer;
+    private final Timer broadcastTimer;
+    private final ReplayLog[] replay = new ReplayLog[FORMATS.length]; // one delta chain per format
+    private final long lingerMs;
+
+    // guarded by this: frames must reach subscribers in version order.
+    // Versions start at the boot time in microseconds so ids from a previous run never look current.
+    private long version = System.currentTimeMillis() * 1000;
+    private StreamState lastState;   // current state, null while it is an admin payload
+    private Object lastPayload = ""; // current state when lastState is null
+    private final Map<StreamVariant, SseFrame> lastFrames = new HashMap<>(); // current state encoded, built lazily
+    private SseFrame payloadFrame;   // lastPayload encoded
+    private StreamState deltaBase;   // what delta subscribers hold; null → next publish sends a full frame
+    private final long[] lastDeltaDemand = new long[FORMATS.length];
+
+    public StreamPublisher(ReportAggregationService svc, SseFanout fanout, ReactiveFanout reactive, ObjectMapper mapper,
+                           StreamBus bus, MeterRegistry meters,
+                           @Value("${stream.replay.max-frames:512}") int replayFrames,
+                           @Value("${stream.replay.max-bytes:16777216}") long replayBytes,
+                           @Value("${stream.replay.linger-ms:120000}") long lingerMs) {
+        this.svc = svc;
+        this.fanout = fanout;
+        this.reactive = reactive;
+        this.mapper = mapper;
+        this.bus = bus;
+        this.stateTimer = publishTimer(meters, "state");
+        this.payloadTimer = publishTimer(meters, "payload");
+        this.broadcastTimer = publishTimer(meters, "broadcast");
+        for (StreamFormat f : FORMATS) replay[f.ordinal()] = new ReplayLog(replayFrames, replayBytes);
+        Arrays.fill(lastDeltaDemand, Long.MIN_VALUE / 2);
+        this.lingerMs = lingerMs;
+        bus.subscribe(m -> {
+            switch (m.kind()) {
+                case STATE -> publishLocal(m.body());
+                case BROADCAST -> broadcastLocal(m.body());
+                default -> { } // ingest, handled by the pipeline
+            }
+        });
+    }
+
+    /**
+     * Registers a dashboard and queues its greeting plus whatever it is missing: nothing if
+     * {@code lastEventId} is current, the missed deltas if they are still in the replay log, and the
+     * full state otherwise.
+     */
+    public synchronized SseSubscriber subscribe(SseEmitter emitter, StreamMode mode, StreamVariant variant,
+                                                String lastEventId) {
+        // a simplified plan is re-picked on every change, so there is nothing to diff: snapshots only
+        if (variant.simplified()) mode = StreamMode.SNAPSHOT;
+        StreamFormat format = variant.format();
+        SseSubscriber sub = fanout.register(emitter, mode, variant);
+        if (mode == StreamMode.DELTA)
+            lastDeltaDemand[format.ordinal()] = System.currentTimeMillis();
+
+        // no id: the greeting must not move the client's Last-Event-ID
+        fanout.send(sub, SseFrame.of(mapper, "Hello", null, "connection successful!"));
+
+        long seen = parseVersion(lastEventId);
+        List<SseFrame> missed = (seen < 0) ? null
+                : (mode == StreamMode.DELTA) ? replay[format.ordinal()].since(seen, version)
+                : (seen == version) ? List.of() : null;
+        if (missed == null) {
+            fanout.send(sub, currentFrame(variant), () -> currentFrame(variant));
+        } else {
+            for (SseFrame frame : missed) fanout.send(sub, frame, () -> currentFrame(variant));
+        }
+        return sub;
+    }
+
+    /**
+     * Full-state stream as reactive server-sent events: greeting, current state, then every change
+     * (latest wins for a slow subscriber) and periodic heartbeats. Simplified variants work as on SSE.
+     */
+    public Flux<ServerSentEvent<String>> reactiveStream(StreamVariant variant) {
+        return Flux.defer(() -> {
+            synchronized (this) {
+                return reactive.subscribe(variant, version, () -> currentFrame(variant),
+                        SseFrame.of(mapper, "Hello", null, "connection successful!"));
+            }
+        });
+    }
+
+    /** Version and payload of the current state, for one-shot reads outside the stream. */
+    public synchronized Snapshot snapshot(StreamVariant variant) {
+        return new Snapshot(version, currentPayload(variant));
+    }
+
+    public record Snapshot(long version, Object payload) {}
+
+    public synchronized long version() {
+        return version;
+    }
+
+    /** Publishes the current aggregation state as the next version. */
+    public synchronized void publish() {
+        long started = System.nanoTime();
+        try {
+            publishState();
+        } finally {
+            stateTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void publishState() {
+        StreamState prev = deltaBase;
+        StreamState cur = svc.captureState();
+        long v = ++version;
+
+        lastState = cur;
+        lastPayload = null;
+        payloadFrame = null;
+        lastFrames.clear();
+        deltaBase = cur;
+
+        for (StreamVariant variant : fanout.variants(StreamMode.SNAPSHOT)) {
+            fanout.broadcast(StreamMode.SNAPSHOT, variant, currentFrame(variant), () -> currentFrame(variant));
+        }
+        reactive.publish(v, this::currentFrame);
+
+        long now = System.currentTimeMillis();
+        for (StreamFormat f : FORMATS) {
+            StreamVariant variant = StreamVariant.full(f);
+            Supplier<SseFrame> full = () -> currentFrame(variant);
+            boolean deltaClients = fanout.hasSubscribers(StreamMode.DELTA, variant);
+            if (deltaClients)
+                lastDeltaDemand[f.ordinal()] = now;
+
+            if (prev == null || now - lastDeltaDemand[f.ordinal()] > lingerMs) {
+                // nobody needs deltas (or there is nothing to diff against): the chain breaks here
+                replay[f.ordinal()].clear();
+                if (deltaClients)
+                    fanout.broadcast(StreamMode.DELTA, variant, full.get(), full);
+                continue;
+            }
+
+            SseFrame delta = SseFrame.delta(mapper, String.valueOf(v), svc.buildStreamDelta(prev, cur, v, f.packed()));
+            replay[f.ordinal()].append(v, delta);
+            fanout.broadcast(StreamMode.DELTA, variant, delta, full);
+        }
+    }
+
+    /** Publishes an arbitrary payload as the full state (admin pushes); delta subscribers resync from it. */
+    public void publish(Object payload) {
+        publishLocal(payload);
+        // outside the lock: a local bus delivers to the other publishers on this thread
+        bus.publish(StreamBus.Kind.STATE, payload);
+    }
+
+    /** Sends a one-off payload to everyone without making it the current state. */
+    public void broadcast(Object payload) {
+        broadcastLocal(payload);
+        bus.publish(StreamBus.Kind.BROADCAST, payload);
+    }
+
+    private static Timer publishTimer(MeterRegistry meters, String kind) {
+        return Timer.builder("swamp.stream.publish").tag("kind", kind)
+                .description("Time to build, encode and enqueue one stream frame")
+                .publishPercentileHistogram().register(meters);
+    }
+
+    private synchronized void publishLocal(Object payload) {
+        long started = System.nanoTime();
+        long v = ++version;
+        lastState = null;
+        lastPayload = payload;
+        // not aggregation state, so every variant gets the same bytes
+        SseFrame frame = SseFrame.of(mapper, "message", String.valueOf(v), payload);
+        lastFrames.clear();
+        payloadFrame = frame;
+        deltaBase = null;
+        for (ReplayLog log : replay) log.clear();
+        fanout.broadcast(frame);
+        reactive.publish(v, variant -> frame);
+        payloadTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void broadcastLocal(Object payload) {
+        long started = System.nanoTime();
+        SseFrame frame = SseFrame.of(mapper, "message", null, payload);
+        fanout.broadcast(frame);
+        reactive.broadcast(frame);
+        // whatever delta subscribers hold now is not the aggregation state any more
+        deltaBase = null;
+        broadcastTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private SseFrame currentFrame(StreamVariant variant) {
+        if (lastState == null && payloadFrame != null)
+            return payloadFrame;
+        return lastFrames.computeIfAbsent(variant,
+                v -> SseFrame.of(mapper, "message", String.valueOf(version), currentPayload(v)));
+    }
+
+    private Object currentPayload(StreamVariant variant) {
+        if (lastState == null)
+            return lastPayload;
+        return svc.buildStreamdata(lastState, variant.format().packed(), variant.maxPoints());
+    }
+
+    private static long parseVersion(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank())
+            return -1;
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.swamp_portal.webapp.stream;
+
+/**
+ * What a subscriber's full-state frames look like: the {@link StreamFormat} and the travel plan point
+ * budget (0 = every point). Budgets are rounded down to a power of two between {@link #MIN_POINTS} and
+ * {@link #MAX_POINTS}, so clients share a small set of resolution tiers and one frame per tier.
+ */
+public record StreamVariant(StreamFormat format, int maxPoints) {
+    public static final int MIN_POINTS = 32;
+    public static final int MAX_POINTS = 8192;
+
+    public static StreamVariant of(StreamFormat format, Integer maxPoints) {
+        return new StreamVariant(format, tier(maxPoints));
+    }
+
+    public static StreamVariant full(StreamFormat format) {
+        return new StreamVariant(format, 0);
+    }
+
+    public boolean simplified() {
+        return maxPoints > 0;
+    }
+
+    static int tier(Integer maxPoints) {
+        if (maxPoints == null || maxPoints <= 0 || maxPoints > MAX_POINTS)
+            return 0;
+        return Integer.highestOneBit(Math.max(MIN_POINTS, maxPoints));
+    }
+}
@@ -0,0 +1,337 @@
+package com.swamp_portal.webapp.telemetry;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.swamp_portal.webapp.data_format.Plan;
+import com.swamp_portal.webapp.data_format.Report;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of everything ingested, in memory-mapped segment files under {@code telemetry.log.dir}.
+ * Off by default; enabling it requires the directory to be set. Disk use is bounded by
+ * {@code segment-bytes × max-segments} (each segment is mapped at full size when created).
+ * Appends are a copy into the mapped segment; a flusher thread forces dirty segments to disk every
+ * {@code telemetry.log.flush-ms} (group commit), so ingest never waits for an fsync. A crash can lose at
+ * most that last interval.
+ * <p>
+ * Segment: 16-byte header (magic, format version, creation time) then records of
+ * {@code [int length][int crc32][byte type][long epochMillis][CBOR payload]}; a zero length marks the end.
+ * A torn record at the tail (bad CRC) is treated as the end and overwritten by the next append.
+ * <p>
+ * Appends come from the ingest worker only.
+ */
+@Component
+public class TelemetryLog {
+    private static final Logger log = LoggerFactory.getLogger(TelemetryLog.class);
+
+    public enum Type {
+        REPORT(1), PLAN(2);
+
+        final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        static Type of(byte code) {
+            for (Type t : values()) if (t.code == code) return t;
+            return null;
+        }
+    }
+
+    /** One decoded record, as handed to {@link #replay}. */
+    public record Entry(Type type, long epochMillis, Object value) {}
+
+    private record Raw(byte type, long epochMillis, byte[] payload) {}
+
+    private static final int MAGIC = 0x53574C47; // "SWLG"
+    private static final int FORMAT = 1;
+    private static final int SEGMENT_HEADER = 16;
+    private static final int RECORD_HEADER = 4 + 4 + 1 + 8;
+    private static final String SUFFIX = ".seg";
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final CBORMapper cbor = new CBORMapper();
+    private final ScheduledExecutorService flusher;
+
+    // writer state, ingest worker only (segment swaps are also seen by the flusher, hence volatile)
+    private volatile Segment current;
+    private volatile boolean dirty;
+
+    public TelemetryLog(@Value("${telemetry.log.enabled:false}") boolean enabled,
+                        @Value("${telemetry.log.dir:}") String dir,
+                        @Value("${telemetry.log.segment-bytes:16777216}") int segmentBytes,
+                        @Value("${telemetry.log.max-segments:8}") int maxSegments,
+                        @Value("${telemetry.log.flush-ms:200}") long flushMs) {
+        if (enabled && dir.isBlank())
+            throw new IllegalStateException("telemetry.log.enabled=true needs telemetry.log.dir");
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.segmentBytes = Math.max(64 * 1024, segmentBytes);
+        this.maxSegments = Math.max(2, maxSegments);
+        if (!enabled) {
+            this.flusher = null;
+            return;
+        }
+        try {
+            Files.createDirectories(this.dir);
+            List<Path> segments = segments();
+            this.current = segments.isEmpty() ? Segment.create(segmentPath(0), 0, this.segmentBytes)
+                                              : Segment.reopen(segments.get(segments.size() - 1));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open telemetry log in " + this.dir.toAbsolutePath(), e);
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "telemetry-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushMs, Math.max(1, flushMs), TimeUnit.MILLISECONDS);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public void append(Report report) {
+        append(Type.REPORT, report);
+    }
+
+    public void append(Plan plan) {
+        append(Type.PLAN, plan);
+    }
+
+    /**
+     * Copies one record into the current segment, rolling to a new one when it is full. Failures are
+     * logged, not thrown: losing a log record must not stop live ingest.
+     */
+    private void append(Type type, Object value) {
+        if (!enabled || value == null) return;
+        try {
+            byte[] payload = cbor.writeValueAsBytes(value);
+            int size = RECORD_HEADER + payload.length;
+            Segment seg = current;
+            if (seg.buf.remaining() < size + 4) seg = roll(size + 4); // keep room for the end marker
+
+            CRC32 crc = new CRC32();
+            crc.update(type.code);
+            long now = System.currentTimeMillis();
+            crc.update(longBytes(now));
+            crc.update(payload);
+
+            MappedByteBuffer buf = seg.buf;
+            int at = buf.position();
+            // body first, length last: a reader never sees a length without its bytes
+            buf.position(at + 4);
+            buf.putInt((int) crc.getValue());
+            buf.put(type.code);
+            buf.putLong(now);
+            buf.put(payload);
+            buf.putInt(buf.position(), 0);
+            buf.putInt(at, payload.length);
+            dirty = true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Telemetry log append failed ({})", type, e);
+        }
+    }
+
+    /**
+     * Feeds every record written at or after {@code sinceEpochMillis}, oldest first, to {@code sink}.
+     * Meant for startup, before live appends begin. Returns the number of records replayed.
+     */
+    public int replay(long sinceEpochMillis, Consumer<Entry> sink) {
+        if (!enabled) return 0;
+        int n = 0;
+        try {
+            List<Path> segments = segments();
+            // skip segments whose successor was already created before the cutoff
+            int first = 0;
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                if (createdMillis(segments.get(i + 1)) <= sinceEpochMillis) first = i + 1;
+            }
+            for (int i = first; i < segments.size(); i++) {
+                n += replaySegment(segments.get(i), sinceEpochMillis, sink);
+            }
+        } catch (IOException e) {
+            log.error("Telemetry log replay failed after {} records", n, e);
+        }
+        return n;
+    }
+
+    private int replaySegment(Path path, long since, Consumer<Entry> sink) throws IOException {
+        int n = 0;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (!Segment.validHeader(buf)) {
+                log.warn("Skipping telemetry segment {} (bad header)", path.getFileName());
+                return 0;
+            }
+            buf.position(SEGMENT_HEADER);
+            Raw raw;
+            while ((raw = Segment.nextRecord(buf)) != null) {
+                Type type = Type.of(raw.type());
+                if (type == null || raw.epochMillis() < since) continue;
+                try {
+                    Class<?> cls = (type == Type.REPORT) ? Report.class : Plan.class;
+                    Object value = cbor.readValue(raw.payload(), cls);
+                    sink.accept(new Entry(type, raw.epochMillis(), value));
+                    n++;
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Skipping unreadable telemetry record in {}", path.getFileName(), e);
+                }
+            }
+        }
+        return n;
+    }
+
+    /** Group commit: one force for everything appended since the last tick. */
+    void flush() {
+        if (!dirty) return;
+        dirty = false;
+        try {
+            current.buf.force();
+        } catch (RuntimeException e) {
+            dirty = true;
+            log.error("Telemetry log flush failed", e);
+        }
+    }
+
+    private Segment roll(int needed) throws IOException {
+        Segment old = current;
+        old.buf.force();
+        old.close();
+        Segment next = Segment.create(segmentPath(old.index + 1), old.index + 1,
+                Math.max(segmentBytes, SEGMENT_HEADER + needed));
+        current = next;
+
+        List<Path> segments = segments();
+        for (int i = 0; i + maxSegments < segments.size(); i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+        return next;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return dir.resolve(String.format("%020d%s", index, SUFFIX));
+    }
+
+    private static long createdMillis(Path segment) throws IOException {
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER);
+            ch.read(header, 0);
+            return header.getLong(8);
+        }
+    }
+
+    private static byte[] longBytes(long v) {
+        byte[] b = new byte[8];
+        for (int i = 7; i >= 0; i--, v >>>= 8) b[i] = (byte) v;
+        return b;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (!enabled) return;
+        flusher.shutdownNow();
+        dirty = true;
+        flush();
+        current.close();
+    }
+
+    /** One mapped segment file. */
+    private static final class Segment {
+        final long index;
+        final FileChannel channel;
+        final MappedByteBuffer buf;
+
+        private Segment(long index, FileChannel channel, MappedByteBuffer buf) {
+            this.index = index;
+            this.channel = channel;
+            this.buf = buf;
+        }
+
+        static Segment create(Path path, long index, int size) throws IOException {
+            FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buf.putInt(MAGIC).putInt(FORMAT).putLong(System.currentTimeMillis());
+            buf.putInt(buf.position(), 0);
+            buf.force();
+            return new Segment(index, ch, buf);
+        }
+
+        /** Maps an existing segment and positions it after its last intact record. */
+        static Segment reopen(Path path) throws IOException {
+            long index = Long.parseLong(path.getFileName().toString().replace(SUFFIX, ""));
+            FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+            if (!validHeader(buf)) {
+                ch.close();
+                throw new IOException("Bad telemetry segment header: " + path);
+            }
+            buf.position(SEGMENT_HEADER);
+            while (nextRecord(buf) != null) { }
+            if (buf.remaining() >= 4) buf.putInt(buf.position(), 0); // cut off a torn tail
+            return new Segment(index, ch, buf);
+        }
+
+        static boolean validHeader(MappedByteBuffer buf) {
+            return buf.capacity() >= SEGMENT_HEADER && buf.getInt(0) == MAGIC && buf.getInt(4) == FORMAT;
+        }
+
+        /**
+         * The record at the buffer's position, advancing past it; null (position unchanged) at the end
+         * marker or at a torn / corrupt record.
+         */
+        static Raw nextRecord(MappedByteBuffer buf) {
+            int at = buf.position();
+            if (buf.remaining() < RECORD_HEADER) return null;
+            int len = buf.getInt(at);
+            if (len <= 0 || len > buf.remaining() - RECORD_HEADER) return null;
+            int crcStored = buf.getInt(at + 4);
+            byte[] body = new byte[1 + 8 + len];
+            buf.get(at + 8, body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != crcStored) return null;
+            buf.position(at + RECORD_HEADER + len);
+            return new Raw(body[0], buf.getLong(at + 9), Arrays.copyOfRange(body, 9, body.length));
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // mapping stays valid until collected; nothing to do
+            }
+        }
+    }
+}
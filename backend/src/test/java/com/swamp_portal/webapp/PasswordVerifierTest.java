@@ -0,0 +1,115 @@
+package com.swamp_portal.webapp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordVerifierTest {
+    // cost 12 takes a few hundred ms per check, so a job is still in flight when the next one is admitted
+    private static final String SLOW_HASH = new BCryptPasswordEncoder(12).encode("slow-password");
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final List<PasswordVerifier> verifiers = new ArrayList<>();
+
+    private PasswordVerifier verifier(int threads, int queue, int maxPerIp, int maxPerUser) {
+        PasswordVerifier v = new PasswordVerifier(4, threads, queue, maxPerIp, maxPerUser, meters);
+        verifiers.add(v);
+        return v;
+    }
+
+    @AfterEach
+    void stop() {
+        verifiers.forEach(PasswordVerifier::shutdown);
+    }
+
+    @Test
+    void encodesAndMatchesOnThePool() {
+        PasswordVerifier v = verifier(2, 8, 4, 2);
+        String hash = v.encode("hunter22", "10.0.0.1").join();
+
+        assertTrue(v.matches("hunter22", hash, "alice", "10.0.0.1").join());
+        assertFalse(v.matches("wrong-one", hash, "alice", "10.0.0.1").join());
+        assertEquals(0, v.stats().rejected());
+        assertEquals(3, meters.get("swamp.auth.hash").timer().count());
+    }
+
+    @Test
+    void unknownUsersStillCostOneHash() {
+        PasswordVerifier v = verifier(2, 8, 4, 2);
+
+        assertFalse(v.matchesUnknownUser("hunter22", "ghost", "10.0.0.1").join());
+        assertEquals(1, meters.get("swamp.auth.hash").timer().count());
+    }
+
+    @Test
+    void secondCheckForTheSameUserIsRefusedWhileOneIsInFlight() {
+        PasswordVerifier v = verifier(4, 8, 0, 1);
+        CompletableFuture<Boolean> first = v.matches("slow-password", SLOW_HASH, "alice", "10.0.0.1");
+        CompletableFuture<Boolean> second = v.matches("slow-password", SLOW_HASH, "alice", "10.0.0.2");
+        CompletableFuture<Boolean> other = v.matches("slow-password", SLOW_HASH, "bob", "10.0.0.1");
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, refusal(second));
+        assertTrue(first.join());
+        assertTrue(other.join());
+        // the slot is free again once the first check is done
+        assertTrue(v.matches("slow-password", SLOW_HASH, "alice", "10.0.0.1").join());
+        assertEquals(1.0, meters.get("swamp.auth.hash.rejected").functionCounter().count());
+    }
+
+    @Test
+    void perIpLimitCoversSignupAndLogin() {
+        PasswordVerifier v = verifier(4, 8, 1, 0);
+        CompletableFuture<Boolean> first = v.matches("slow-password", SLOW_HASH, "alice", "10.0.0.1");
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, refusal(v.matches("x", SLOW_HASH, "bob", "10.0.0.1")));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, refusal(v.encode("new-password", "10.0.0.1")));
+        CompletableFuture<Boolean> elsewhere = v.matches("slow-password", SLOW_HASH, "bob", "10.0.0.2");
+
+        assertTrue(first.join());
+        assertTrue(elsewhere.join());
+        assertEquals(2, v.stats().rejected());
+    }
+
+    @Test
+    void zeroLimitsAdmitEverythingTheQueueHolds() {
+        PasswordVerifier v = verifier(2, 8, 0, 0);
+        List<CompletableFuture<Boolean>> all = new ArrayList<>();
+        for (int i = 0; i < 4; i++) all.add(v.matches("slow-password", SLOW_HASH, "alice", "10.0.0.1"));
+
+        all.forEach(f -> assertTrue(f.join()));
+        assertEquals(0, v.stats().rejected());
+    }
+
+    @Test
+    void fullQueueIsRefusedWithServiceUnavailable() {
+        PasswordVerifier v = verifier(1, 1, 0, 0);
+        CompletableFuture<Boolean> running = v.matches("slow-password", SLOW_HASH, "a", "10.0.0.1");
+        // wait until the worker has taken the first job, so the next one sits in the queue
+        while (v.stats().active() == 0) Thread.onSpinWait();
+        CompletableFuture<Boolean> queued = v.matches("slow-password", SLOW_HASH, "b", "10.0.0.2");
+
+        assertEquals(1.0, meters.get("swamp.auth.hash.queue").gauge().value());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, refusal(v.matches("slow-password", SLOW_HASH, "c", "10.0.0.3")));
+        assertTrue(running.join());
+        assertTrue(queued.join());
+        assertEquals(1, v.stats().rejected());
+    }
+
+    /** Refusals fail the future before any hashing, so they are already complete. */
+    private static HttpStatus refusal(CompletableFuture<?> f) {
+        assertTrue(f.isCompletedExceptionally());
+        CompletionException e = assertThrows(CompletionException.class, f::join);
+        ResponseStatusException cause = assertInstanceOf(ResponseStatusException.class, e.getCause());
+        return HttpStatus.valueOf(cause.getStatusCode().value());
+    }
+}
@@ -0,0 +1,123 @@
+package com.swamp_portal.webapp;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseCookie;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionServiceTest {
+    private static final String SECRET = "test-secret-test-secret-test-secret";
+
+    private final List<SessionService> services = new ArrayList<>();
+
+    private SessionService signed(String secret) {
+        return track(new SessionService("signed", 60, 60, 100, 60, secret));
+    }
+
+    private SessionService memory(int maxSessions) {
+        return track(new SessionService("memory", 60, 60, maxSessions, 3600, ""));
+    }
+
+    private SessionService track(SessionService s) {
+        services.add(s);
+        return s;
+    }
+
+    @AfterEach
+    void stop() {
+        services.forEach(SessionService::shutdown);
+    }
+
+    private static String login(SessionService s, String user) {
+        ResponseCookie c = s.createSession(user);
+        assertEquals("SESSION", c.getName());
+        assertTrue(c.isHttpOnly());
+        return c.getValue();
+    }
+
+    private static MockHttpServletRequest withToken(String token) {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setCookies(new Cookie("SESSION", token));
+        return req;
+    }
+
+    private static String signedToken(String user, long expiresAt, String secret) throws Exception {
+        Base64.Encoder b64 = Base64.getUrlEncoder().withoutPadding();
+        String body = b64.encodeToString(user.getBytes(StandardCharsets.UTF_8)) + "." + Long.toString(expiresAt, 36);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return body + "." + b64.encodeToString(mac.doFinal(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void signedTokenVerifiesOnAnyNodeWithTheSameSecret() {
+        String token = login(signed(SECRET), "alice.o'brien");
+
+        assertEquals("alice.o'brien", signed(SECRET).getUser(withToken(token)));
+        assertNull(signed("another-secret").getUser(withToken(token)));
+    }
+
+    @Test
+    void signedModeRefusesToStartWithoutSecret() {
+        assertThrows(IllegalStateException.class, () -> signed(" "));
+    }
+
+    @Test
+    void tamperedSignedTokensAreRejected() {
+        SessionService s = signed(SECRET);
+        String token = login(s, "alice");
+        String[] parts = token.split("\\.");
+        String bob = Base64.getUrlEncoder().withoutPadding().encodeToString("bob".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(s.getUser(withToken(bob + "." + parts[1] + "." + parts[2])));
+        assertNull(s.getUser(withToken(parts[0] + ".zzzzzzzzz." + parts[2])));
+        assertNull(s.getUser(withToken(token + "x")));
+        assertNull(s.getUser(withToken("not a token")));
+        assertNull(s.getUser(withToken("..")));
+        assertNull(s.getUser(new MockHttpServletRequest()));
+    }
+
+    @Test
+    void expiredSignedTokensAreRejected() throws Exception {
+        SessionService s = signed(SECRET);
+
+        assertNull(s.getUser(withToken(signedToken("alice", System.currentTimeMillis() - 1, SECRET))));
+        assertEquals("alice", s.getUser(withToken(signedToken("alice", System.currentTimeMillis() + 60_000, SECRET))));
+    }
+
+    @Test
+    void memorySessionsEndOnLogout() {
+        SessionService s = memory(100);
+        String token = login(s, "alice");
+        assertEquals("alice", s.getUser(withToken(token)));
+
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        s.logout(withToken(token), res);
+
+        assertNull(s.getUser(withToken(token)));
+        assertEquals(0, res.getCookie("SESSION").getMaxAge());
+        assertNull(s.getUser(withToken("unknown")));
+    }
+
+    @Test
+    void memorySessionsAreBounded() {
+        SessionService s = memory(2);
+        String a = login(s, "a"), b = login(s, "b"), c = login(s, "c");
+
+        int live = 0;
+        for (String token : List.of(a, b, c)) if (s.getUser(withToken(token)) != null) live++;
+        assertEquals(2, live);
+        assertEquals("c", s.getUser(withToken(c)));
+    }
+}
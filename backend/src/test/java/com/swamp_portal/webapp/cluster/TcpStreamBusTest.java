@@ -0,0 +1,120 @@
+package com.swamp_portal.webapp.cluster;
+
+import com.swamp_portal.webapp.data_format.Report;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TcpStreamBusTest {
+    private static final String SECRET = "test-bus-secret";
+
+    private final List<TcpStreamBus> buses = new ArrayList<>();
+
+    private TcpStreamBus bus(int port, String peers, int capacity, String secret) throws IOException {
+        TcpStreamBus bus = new TcpStreamBus("127.0.0.1", port, peers, capacity, secret);
+        buses.add(bus);
+        return bus;
+    }
+
+    private static BlockingQueue<StreamBus.Message> inbox(TcpStreamBus bus) {
+        BlockingQueue<StreamBus.Message> q = new LinkedBlockingQueue<>();
+        bus.subscribe(q::add);
+        return q;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    private static Report report(String role, long id) {
+        Report r = new Report();
+        r.setIdentityRole(role);
+        r.setReportId(id);
+        return r;
+    }
+
+    @AfterEach
+    void stop() {
+        buses.forEach(TcpStreamBus::shutdown);
+    }
+
+    @Test
+    void refusesToStartWithoutSecret() {
+        assertThrows(IllegalStateException.class, () -> bus(0, "", 16, " "));
+    }
+
+    @Test
+    void deliversFramesBetweenNodesSharingTheSecret() throws Exception {
+        int port = freePort();
+        TcpStreamBus a = bus(port, "", 16, SECRET);
+        BlockingQueue<StreamBus.Message> in = inbox(a);
+        TcpStreamBus b = bus(freePort(), "127.0.0.1:" + port, 16, SECRET);
+
+        b.publish(StreamBus.Kind.STATE, Map.of("mode", "survey"));
+        b.publish(StreamBus.Kind.REPORT, report("sub0", 7));
+
+        StreamBus.Message state = in.poll(5, TimeUnit.SECONDS);
+        assertNotNull(state);
+        assertEquals(StreamBus.Kind.STATE, state.kind());
+        assertEquals(b.nodeId(), state.origin());
+        assertEquals(Map.of("mode", "survey"), state.body());
+        StreamBus.Message report = in.poll(5, TimeUnit.SECONDS);
+        assertNotNull(report);
+        assertEquals(7, ((Report) report.body()).getReportId());
+    }
+
+    @Test
+    void dropsFramesSignedWithAnotherSecret() throws Exception {
+        int port = freePort();
+        TcpStreamBus a = bus(port, "", 16, SECRET);
+        BlockingQueue<StreamBus.Message> in = inbox(a);
+        TcpStreamBus intruder = bus(freePort(), "127.0.0.1:" + port, 16, "not-the-secret");
+
+        intruder.publish(StreamBus.Kind.STATE, Map.of("mode", "hijacked"));
+        intruder.publish(StreamBus.Kind.BROADCAST, "hello");
+
+        assertNull(in.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void peerThatFellBehindIsResyncedWithTheLatestState() throws Exception {
+        int port = freePort();
+        // the peer is not up yet, so everything queues up and the small queue overflows
+        TcpStreamBus b = bus(freePort(), "127.0.0.1:" + port, 2, SECRET);
+        b.publish(StreamBus.Kind.STATE, "s1");
+        b.publish(StreamBus.Kind.REPORT, report("sub0", 1));
+        b.publish(StreamBus.Kind.REPORT, report("sub0", 2));
+        b.publish(StreamBus.Kind.REPORTS, List.of(report("sub1", 3)));
+        b.publish(StreamBus.Kind.STATE, "s2");
+        b.publish(StreamBus.Kind.BROADCAST, "one-off");
+
+        TcpStreamBus a = bus(port, "", 16, SECRET);
+        BlockingQueue<StreamBus.Message> in = inbox(a);
+
+        List<StreamBus.Message> got = new ArrayList<>();
+        for (StreamBus.Message m = in.poll(15, TimeUnit.SECONDS); m != null; m = in.poll(500, TimeUnit.MILLISECONDS))
+            got.add(m);
+        Map<String, Object> latest = new HashMap<>();
+        for (StreamBus.Message m : got) {
+            String key = (m.kind() == StreamBus.Kind.REPORT) ? ((Report) m.body()).getIdentityRole() : m.kind().name();
+            assertNull(latest.put(key, m.body()), "sent twice: " + key);
+        }
+        assertEquals(3, got.size());
+        assertEquals("s2", latest.get("STATE"));
+        assertEquals(2, ((Report) latest.get("sub0")).getReportId());
+        assertEquals(3, ((Report) latest.get("sub1")).getReportId());
+    }
+}
@@ -0,0 +1,52 @@
+package com.swamp_portal.webapp.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swamp_portal.webapp.SessionService;
+import com.swamp_portal.webapp.history.PositionHistory;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryControllerTest {
+    @TempDir
+    Path dir;
+
+    // signed mode starts no sweeper thread
+    private final SessionService sessions = new SessionService("signed", 60, 60, 100, 60, "test-secret") {
+        @Override
+        public String getUser(HttpServletRequest req) {
+            return "alice";
+        }
+    };
+
+    private HttpStatus status(String from, String to) {
+        HistoryController c = new HistoryController(sessions, new PositionHistory(true, dir.toString(), 1), new ObjectMapper());
+        try {
+            c.history("sub0", from, to, null, new MockHttpServletRequest());
+            return HttpStatus.OK;
+        } catch (ResponseStatusException e) {
+            return HttpStatus.valueOf(e.getStatusCode().value());
+        }
+    }
+
+    @Test
+    void rangeBeyondTheNanosecondClockIsABadRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, status("0", "+100000-01-01T00:00:00Z"));
+        assertEquals(HttpStatus.BAD_REQUEST, status("-100000-01-01T00:00:00Z", "0"));
+        assertEquals(HttpStatus.BAD_REQUEST, status(null, "99999999999999999"));
+    }
+
+    @Test
+    void ordinaryRangesAreServed() {
+        assertEquals(HttpStatus.OK, status("1700000000000", "2023-11-15T00:00:00Z"));
+        assertEquals(HttpStatus.OK, status(null, null));
+        assertEquals(HttpStatus.BAD_REQUEST, status("2023-11-15T00:00:00Z", "1700000000000"));
+    }
+}
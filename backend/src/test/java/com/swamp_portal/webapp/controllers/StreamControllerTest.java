@@ -0,0 +1,129 @@
+package com.swamp_portal.webapp.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swamp_portal.webapp.AdminGuard;
+import com.swamp_portal.webapp.cluster.LocalStreamBus;
+import com.swamp_portal.webapp.data_format.Report;
+import com.swamp_portal.webapp.ingest.AggregationCheckpoint;
+import com.swamp_portal.webapp.ingest.IngestPipeline;
+import com.swamp_portal.webapp.telemetry.TelemetryLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamControllerTest {
+    /** Records the chunks handed to the worker; refuses everything after {@code room} chunks. */
+    private static class RecordingPipeline extends IngestPipeline {
+        final List<List<Long>> chunks = new ArrayList<>();
+        int room = Integer.MAX_VALUE;
+        int flushes;
+
+        RecordingPipeline() {
+            super(null, null, new TelemetryLog(false, "", 0, 0, 0), null, new LocalStreamBus("batch-test"),
+                    new AggregationCheckpoint(false, "", 30), new SimpleMeterRegistry(), 1, 0, 0);
+        }
+
+        @Override
+        public boolean submitReports(List<Report> reports) {
+            if (chunks.size() >= room) return false;
+            chunks.add(reports.stream().map(Report::getReportId).toList());
+            return true;
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    private final RecordingPipeline ingest = new RecordingPipeline();
+    private final AdminGuard admin = new AdminGuard() {
+        @Override
+        public void requireAdmin(HttpServletRequest req) {}
+    };
+
+    private StreamController controller(int chunkSize) {
+        return new StreamController(null, admin, ingest, null, null, new ObjectMapper(), 3, chunkSize);
+    }
+
+    private static HttpServletRequest upload(String body) {
+        ByteArrayInputStream in = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        ServletInputStream stream = new ServletInputStream() {
+            @Override public boolean isFinished() { return in.available() == 0; }
+            @Override public boolean isReady() { return true; }
+            @Override public void setReadListener(ReadListener listener) {}
+            @Override public int read() { return in.read(); }
+        };
+        return (HttpServletRequest) Proxy.newProxyInstance(StreamControllerTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class},
+                (proxy, method, args) -> method.getName().equals("getInputStream") ? stream : null);
+    }
+
+    private static String reports(String separator, int... ids) {
+        StringBuilder sb = new StringBuilder();
+        for (int id : ids) {
+            if (!sb.isEmpty()) sb.append(separator);
+            sb.append("{\"report_id\":").append(id).append('}');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void jsonArrayIsHandedOverInOrderedChunksAndFlushedOnce() throws Exception {
+        ResponseEntity<StreamController.BatchResult> res =
+                controller(2).publish_reports(upload("[" + reports(",", 1, 2, 3, 4, 5) + "]"));
+
+        assertEquals(HttpStatus.ACCEPTED, res.getStatusCode());
+        assertEquals(5, res.getBody().accepted());
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L, 4L), List.of(5L)), ingest.chunks);
+        assertEquals(1, ingest.flushes);
+    }
+
+    @Test
+    void ndjsonBodyIsReadTheSameWay() throws Exception {
+        ResponseEntity<StreamController.BatchResult> res =
+                controller(256).publish_reports(upload(reports("\n", 1, 2, 3) + "\n"));
+
+        assertEquals(3, res.getBody().accepted());
+        assertEquals(List.of(List.of(1L, 2L, 3L)), ingest.chunks);
+        assertEquals(1, ingest.flushes);
+    }
+
+    @Test
+    void fullQueueAnswers429WithWhatWasAccepted() throws Exception {
+        ingest.room = 1;
+        ResponseEntity<StreamController.BatchResult> res =
+                controller(2).publish_reports(upload("[" + reports(",", 1, 2, 3, 4, 5) + "]"));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, res.getStatusCode());
+        assertEquals("3", res.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(2, res.getBody().accepted());
+        // the accepted part still goes out
+        assertEquals(1, ingest.flushes);
+    }
+
+    @Test
+    void malformedReportIsRefusedAfterPublishingWhatCameBefore() {
+        String body = "[" + reports(",", 1, 2) + ",{\"report_id\":\"x\"}]";
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> controller(2).publish_reports(upload(body)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        assertEquals(List.of(List.of(1L, 2L)), ingest.chunks);
+        assertEquals(1, ingest.flushes);
+    }
+}
@@ -0,0 +1,109 @@
+package com.swamp_portal.webapp.data_format;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviationWindowTest {
+
+    /** Plan along x at 1 m/s, sampled every second over [from, to]. */
+    private static PointSeries plan(int from, int to) {
+        PointSeries s = new PointSeries();
+        for (int t = from; t <= to; t++) s.add(t, t, 0, 0);
+        return s;
+    }
+
+    /** History samples at the given times, off the plan by {@code dy}. */
+    private static PointSeries hist(double dy, double... times) {
+        PointSeries s = new PointSeries();
+        for (double t : times) s.add(t, t, dy, 0);
+        return s;
+    }
+
+    @Test
+    void interpolatesPlanBetweenSamples() {
+        DeviationWindow w = new DeviationWindow(60);
+        PointSeries plan = new PointSeries();
+        plan.add(0, 0, 0, 0);
+        plan.add(10, 10, 0, 0);
+        PointSeries h = new PointSeries();
+        h.add(5, 5, 3, 4); // plan at t=5 is (5,0,0)
+
+        w.update(plan, h, 10);
+
+        DeviationWindow.Stats s = w.stats();
+        assertEquals(1, s.count());
+        assertEquals(5.0, s.avg(), 1e-9);
+        assertEquals(5.0, s.max(), 1e-9);
+    }
+
+    @Test
+    void skipsSamplesOutsidePlanAndAlreadyCounted() {
+        DeviationWindow w = new DeviationWindow(60);
+        w.update(plan(10, 20), hist(1, 5, 12, 25), 30); // 5 is before the plan, 25 after it
+        assertEquals(1, w.stats().count());
+
+        w.update(plan(10, 20), hist(2, 12, 14), 30); // 12 was already counted
+        assertEquals(2, w.stats().count());
+        assertEquals(1.5, w.stats().avg(), 1e-9);
+    }
+
+    @Test
+    void evictsSamplesThatLeaveTheWindow() {
+        DeviationWindow w = new DeviationWindow(10);
+        w.update(plan(0, 100), hist(5, 1, 2), 5);
+        w.update(plan(0, 100), hist(1, 14, 15), 15);
+
+        DeviationWindow.Stats s = w.stats();
+        assertEquals(2, s.count());
+        assertEquals(1.0, s.max(), 1e-9);
+
+        w.update(null, null, 100);
+        assertSame(DeviationWindow.Stats.EMPTY, w.stats());
+    }
+
+    @Test
+    void matchesBruteForceStats() {
+        Random rnd = new Random(42);
+        DeviationWindow w = new DeviationWindow(30);
+        double[] d = new double[200];
+        PointSeries plan = plan(0, 200);
+        for (int t = 0; t < 200; t++) {
+            d[t] = rnd.nextDouble() * 10;
+            w.update(plan, hist(d[t], t), t);
+
+            int from = Math.max(0, t - 30), n = t - from + 1;
+            double sum = 0, max = 0;
+            double[] window = new double[n];
+            for (int k = from; k <= t; k++) {
+                sum += d[k];
+                max = Math.max(max, d[k]);
+                window[k - from] = d[k];
+            }
+            java.util.Arrays.sort(window);
+            double p95 = window[(int) Math.ceil(0.95 * n) - 1];
+
+            DeviationWindow.Stats s = w.stats();
+            assertEquals(n, s.count());
+            assertEquals(sum / n, s.avg(), 1e-9);
+            assertEquals(max, s.max(), 0);
+            assertTrue(s.p95() >= p95 && s.p95() <= p95 * 1.021, "p95 " + s.p95() + " vs " + p95);
+        }
+    }
+
+    @Test
+    void restoresFromSamples() {
+        DeviationWindow w = new DeviationWindow(60);
+        w.update(plan(0, 50), hist(2, 10, 11, 12), 20);
+        DeviationWindow.Samples saved = w.samples();
+
+        DeviationWindow copy = new DeviationWindow(60);
+        copy.restore(saved);
+
+        assertEquals(w.stats(), copy.stats());
+        copy.update(plan(0, 50), hist(9, 12), 20); // already counted before the restore
+        assertEquals(3, copy.stats().count());
+    }
+}
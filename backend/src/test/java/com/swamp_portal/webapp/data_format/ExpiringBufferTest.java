@@ -0,0 +1,72 @@
+package com.swamp_portal.webapp.data_format;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringBufferTest {
+    private static final Instant BASE = Instant.now().plusSeconds(3600);
+
+    private static TravelPoint at(int second) {
+        return new TravelPoint(BASE.plusSeconds(second), second, 0, 0, null, null, null, null);
+    }
+
+    private static List<Integer> seconds(List<TravelPoint> points) {
+        List<Integer> out = new ArrayList<>(points.size());
+        for (TravelPoint p : points) out.add((int) p.getX());
+        return out;
+    }
+
+    @Test
+    void appendsInOrderAndMergesOutOfOrderBatches() {
+        ExpiringBuffer<TravelPoint> buf = new ExpiringBuffer<>();
+        buf.addAll(List.of(at(1), at(3), at(5)));
+        buf.addAll(List.of(at(6), at(7)));
+        buf.addAll(List.of(at(4), at(2)));
+        buf.add(at(0));
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7), seconds(buf.snapshot()));
+        assertEquals(8, buf.size());
+    }
+
+    @Test
+    void snapshotIsStableAcrossLaterWrites() {
+        ExpiringBuffer<TravelPoint> buf = new ExpiringBuffer<>();
+        for (int i = 0; i < 10; i++) buf.add(at(i));
+        List<TravelPoint> view = buf.snapshot();
+
+        for (int i = 10; i < 100; i++) buf.add(at(i));
+        buf.purge(BASE.plusSeconds(50));
+        buf.addAll(List.of(at(60), at(61)));
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), seconds(view));
+        assertEquals(52, buf.size());
+    }
+
+    @Test
+    void purgeKeepsNewestItem() {
+        ExpiringBuffer<TravelPoint> buf = new ExpiringBuffer<>();
+        buf.addAll(List.of(at(1), at(2), at(3)));
+
+        buf.purge(BASE.plusSeconds(100));
+
+        assertEquals(1, buf.size());
+        assertEquals(3, (int) buf.peek().orElseThrow().getX());
+    }
+
+    @Test
+    void replaceAllDropsPreviousItems() {
+        ExpiringBuffer<TravelPoint> buf = new ExpiringBuffer<>();
+        buf.addAll(List.of(at(1), at(2)));
+        List<TravelPoint> before = buf.snapshot();
+
+        buf.replaceAll(List.of(at(9), at(8)));
+
+        assertEquals(List.of(8, 9), seconds(buf.snapshot()));
+        assertEquals(List.of(1, 2), seconds(before));
+    }
+}
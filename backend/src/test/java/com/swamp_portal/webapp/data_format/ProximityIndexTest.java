@@ -0,0 +1,121 @@
+package com.swamp_portal.webapp.data_format;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProximityIndexTest {
+    private static final long SEC = 1_000_000_000L;
+    private static final long NOW = 1_700_000_000L * SEC;
+    private static final double RADIUS = 5, WINDOW = 2;
+
+    private static TrajectoryStore.Batch straight(long fromSec, int n, double y) {
+        TrajectoryStore.Batch b = new TrajectoryStore.Batch(n);
+        for (int i = 0; i < n; i++) b.add(NOW + (fromSec + i) * SEC, (fromSec + i) * 2.0, y, 0);
+        return b;
+    }
+
+    @Test
+    void reportsClosestApproachOfCrossingPlans() {
+        ProximityIndex index = new ProximityIndex(RADIUS, WINDOW);
+        TrajectoryStore a = new TrajectoryStore(), b = new TrajectoryStore();
+        a.merge(straight(0, 20, 0), NOW);
+        b.merge(straight(0, 20, 3), NOW);
+        index.update("a", a.snapshot());
+        index.update("b", b.snapshot());
+
+        List<ProximityIndex.Event> events = index.events();
+        assertEquals(1, events.size());
+        ProximityIndex.Event e = events.getFirst();
+        assertEquals("a", e.roleA());
+        assertEquals("b", e.roleB());
+        assertEquals(3.0, e.distance(), 1e-9);
+        assertEquals(NOW, e.epochNanos());
+        assertEquals(1.5, e.y(), 1e-9);
+    }
+
+    @Test
+    void conflictsGoAwayWhenAPlanIsRewrittenOrExpires() {
+        ProximityIndex index = new ProximityIndex(RADIUS, WINDOW);
+        TrajectoryStore a = new TrajectoryStore(), b = new TrajectoryStore();
+        a.merge(straight(0, 20, 0), NOW);
+        b.merge(straight(0, 20, 3), NOW);
+        index.update("a", a.snapshot());
+        index.update("b", b.snapshot());
+
+        b.merge(straight(10, 10, 50), NOW); // second half moves away
+        index.update("b", b.snapshot());
+        assertEquals(1, index.events().size());
+        assertEquals(NOW, index.events().getFirst().epochNanos());
+
+        b.merge(straight(20, 1, 50), NOW + 12 * SEC); // first half expires
+        a.merge(straight(20, 1, 0), NOW + 12 * SEC);
+        index.update("a", a.snapshot());
+        index.update("b", b.snapshot());
+        assertEquals(List.of(), index.events());
+    }
+
+    @Test
+    void matchesBruteForceUnderRandomUpdates() {
+        Random rnd = new Random(7);
+        String[] roles = {"r0", "r1", "r2", "r3"};
+        Map<String, TrajectoryStore> stores = new TreeMap<>();
+        for (String r : roles) stores.put(r, new TrajectoryStore());
+        ProximityIndex index = new ProximityIndex(RADIUS, WINDOW);
+        long now = NOW;
+
+        for (int step = 0; step < 400; step++) {
+            String role = roles[rnd.nextInt(roles.length)];
+            int from = (int) ((now - NOW) / SEC) + rnd.nextInt(20);
+            int n = 1 + rnd.nextInt(30);
+            TrajectoryStore.Batch b = new TrajectoryStore.Batch(n);
+            double lane = rnd.nextInt(4) * 4.0;
+            for (int i = 0; i < n; i++) {
+                long t = NOW + (from + i) * SEC / 2;
+                b.add(t, (from + i) + rnd.nextGaussian() * 0.5, lane + rnd.nextGaussian(), 0);
+            }
+            if (rnd.nextInt(10) == 0) now += 3 * SEC;
+            if (rnd.nextInt(20) == 0) stores.get(role).replace(b, now);
+            else stores.get(role).merge(b, now);
+            index.update(role, stores.get(role).snapshot());
+
+            assertEquals(bruteForce(stores), index.events(), "step " + step);
+        }
+    }
+
+    /** Closest approach per pair by comparing every sample with every other. */
+    private static List<ProximityIndex.Event> bruteForce(Map<String, TrajectoryStore> stores) {
+        List<String> roles = new ArrayList<>(stores.keySet());
+        long window = Math.round(WINDOW * 1e9);
+        List<ProximityIndex.Event> out = new ArrayList<>();
+        for (int i = 0; i < roles.size(); i++) {
+            for (int j = i + 1; j < roles.size(); j++) {
+                TrajectoryStore.View a = stores.get(roles.get(i)).snapshot(), b = stores.get(roles.get(j)).snapshot();
+                ProximityIndex.Event best = null;
+                for (int p = 0; p < a.size(); p++) {
+                    for (int q = 0; q < b.size(); q++) {
+                        if (Math.abs(a.epochNanos(p) - b.epochNanos(q)) > window) continue;
+                        double dx = a.x(p) - b.x(q), dy = a.y(p) - b.y(q), dz = a.z(p) - b.z(q);
+                        double d = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                        if (d * d > RADIUS * RADIUS) continue;
+                        long t = Math.min(a.epochNanos(p), b.epochNanos(q));
+                        if (best == null || d < best.distance() || (d == best.distance() && t < best.epochNanos())) {
+                            best = new ProximityIndex.Event(roles.get(i), roles.get(j), t, d,
+                                    (a.x(p) + b.x(q)) / 2, (a.y(p) + b.y(q)) / 2, (a.z(p) + b.z(q)) / 2);
+                        }
+                    }
+                }
+                if (best != null) out.add(best);
+            }
+        }
+        out.sort((x, y) -> x.distance() != y.distance() ? Double.compare(x.distance(), y.distance())
+                : Long.compare(x.epochNanos(), y.epochNanos()));
+        return out;
+    }
+}
@@ -0,0 +1,100 @@
+package com.swamp_portal.webapp.data_format;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportAggregationServiceTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private Report report(String role, double start, double... xs) throws Exception {
+        StringBuilder plan = new StringBuilder();
+        for (int i = 0; i < xs.length; i++) {
+            if (i > 0) plan.append(',');
+            plan.append(String.format(java.util.Locale.ROOT, "{\"t\":%.3f,\"x\":%s,\"y\":%s,\"z\":-2.5}",
+                    start + i * 0.1, Double.toString(xs[i]), Double.toString(xs[i] / 3)));
+        }
+        String json = "{\"report_id\":1,\"identity_role\":\"" + role + "\",\"snapshot_sent_time\":" + start
+                + ",\"sub0_role\":\"" + role + "\",\"sub0_plan\":[" + plan + "],\"report_stats\":{\"" + role + "\":2}}";
+        return mapper.readValue(json, Report.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> firstSub(Map<String, Object> data) {
+        return ((List<Map<String, Object>>) data.get("Subs")).getFirst();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void packedPlanKeepsDoublePrecision() throws Exception {
+        ReportAggregationService svc = new ReportAggregationService(new SimpleMeterRegistry(), 60, 5, 2);
+        double start = System.currentTimeMillis() / 1000.0 + 600;
+        double[] xs = {4_321_987.123456789, 0.1 + 0.2, -17.000000001};
+        svc.ingestReport(report("sub1", start, xs));
+
+        Map<String, Object> packed = firstSub(svc.buildStreamdata(svc.captureState(), true, 0));
+        double[] xyz = (double[]) ((Map<String, Object>) packed.get("travel_plan")).get("xyz");
+
+        assertEquals(9, xyz.length);
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals(xs[i], xyz[3 * i], 0);
+            assertEquals(xs[i] / 3, xyz[3 * i + 1], 0);
+            assertEquals(-2.5, xyz[3 * i + 2], 0);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void packedAndJsonCarryTheSamePoints() throws Exception {
+        ReportAggregationService svc = new ReportAggregationService(new SimpleMeterRegistry(), 60, 5, 2);
+        double start = System.currentTimeMillis() / 1000.0 + 600;
+        svc.ingestReport(report("sub1", start, 1.5, 2.25, 3.125, 1e-9));
+        StreamState state = svc.captureState();
+
+        Map<String, Object> packed = (Map<String, Object>) firstSub(svc.buildStreamdata(state, true, 0)).get("travel_plan");
+        List<Map<String, Object>> points = (List<Map<String, Object>>) firstSub(svc.buildStreamdata(state, false, 0)).get("travel_plan");
+
+        long t = (long) packed.get("t0");
+        long[] dt = (long[]) packed.get("dt");
+        double[] xyz = (double[]) packed.get("xyz");
+        assertEquals(points.size(), dt.length);
+        assertNull(packed.get("q"));
+        for (int i = 0; i < points.size(); i++) {
+            t += dt[i];
+            Map<String, Object> pos = (Map<String, Object>) points.get(i).get("position");
+            assertEquals(points.get(i).get("timestamp"), t);
+            assertEquals((double) pos.get("x"), xyz[3 * i], 0);
+            assertEquals((double) pos.get("y"), xyz[3 * i + 1], 0);
+            assertEquals((double) pos.get("z"), xyz[3 * i + 2], 0);
+        }
+    }
+
+    @Test
+    void planGaugesAreFleetWide() throws Exception {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        ReportAggregationService svc = new ReportAggregationService(meters, 60, 5, 2);
+        double start = System.currentTimeMillis() / 1000.0 + 600;
+        svc.ingestReport(report("sub1", start, 1, 2, 3));
+        svc.ingestReport(report("sub2", start, 1, 2, 3, 4, 5));
+
+        assertEquals(2.0, meters.get("swamp.plan.roles").gauge().value());
+        assertEquals(8.0, meters.get("swamp.plan.samples").gauge().value());
+        assertEquals(5.0, meters.get("swamp.plan.samples.max").gauge().value());
+    }
+
+    @Test
+    void ingestAndBuildAreTimed() throws Exception {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        ReportAggregationService svc = new ReportAggregationService(meters, 60, 5, 2);
+        svc.ingestReport(report("sub1", System.currentTimeMillis() / 1000.0 + 600, 1, 2, 3));
+        svc.buildStreamdataWithAvg();
+
+        assertEquals(1, meters.get("swamp.aggregation").tag("op", "ingest_report").timer().count());
+        assertEquals(1, meters.get("swamp.aggregation").tag("op", "build_streamdata").timer().count());
+    }
+}
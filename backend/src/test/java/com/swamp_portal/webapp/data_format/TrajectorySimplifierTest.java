@@ -0,0 +1,73 @@
+package com.swamp_portal.webapp.data_format;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrajectorySimplifierTest {
+    private static final long SEC = 1_000_000_000L;
+    private static final long NOW = 1_700_000_000L * SEC;
+
+    /** A straight line along x with one sharp detour at {@code spike}. */
+    private static TrajectoryStore.View line(int n, int spike) {
+        TrajectoryStore store = new TrajectoryStore();
+        TrajectoryStore.Batch b = new TrajectoryStore.Batch(n);
+        for (int i = 0; i < n; i++) b.add(NOW + i * SEC / 10, i, i == spike ? 50 : 0, 0);
+        store.merge(b, NOW);
+        return store.snapshot();
+    }
+
+    @Test
+    void keepsEndpointsAndStaysInOrderWithinBudget() {
+        TrajectoryStore.View plan = line(1000, -1);
+
+        int[] picked = TrajectorySimplifier.lttb(plan, 64);
+
+        assertEquals(64, picked.length);
+        assertEquals(0, picked[0]);
+        assertEquals(999, picked[63]);
+        for (int k = 1; k < picked.length; k++) assertTrue(picked[k] > picked[k - 1]);
+    }
+
+    @Test
+    void keepsTheSampleThatBendsThePath() {
+        TrajectoryStore.View plan = line(1000, 437);
+
+        int[] picked = TrajectorySimplifier.lttb(plan, 32);
+
+        assertTrue(java.util.Arrays.stream(picked).anyMatch(i -> i == 437));
+    }
+
+    @Test
+    void smallPlansAreSentWhole() {
+        TrajectorySimplifier s = new TrajectorySimplifier();
+        assertNull(s.simplify("sub1", line(100, -1), 100));
+        assertNull(s.simplify("sub1", line(100, -1), 0));
+        assertArrayEquals(new int[] {0, 1, 2}, TrajectorySimplifier.lttb(line(3, -1), 2));
+    }
+
+    @Test
+    void cachesPerPlanContents() {
+        TrajectorySimplifier s = new TrajectorySimplifier();
+        TrajectoryStore store = new TrajectoryStore();
+        TrajectoryStore.Batch b = new TrajectoryStore.Batch(200);
+        for (int i = 0; i < 200; i++) b.add(NOW + i * SEC, i, 0, 0);
+        store.merge(b, NOW);
+
+        int[] first = s.simplify("sub1", store.snapshot(), 32);
+        assertSame(first, s.simplify("sub1", store.snapshot(), 32));
+        assertNotSame(first, s.simplify("sub2", store.snapshot(), 32));
+
+        TrajectoryStore.Batch more = new TrajectoryStore.Batch(1);
+        more.add(NOW + 500 * SEC, 500, 0, 0);
+        store.merge(more, NOW);
+        int[] after = s.simplify("sub1", store.snapshot(), 32);
+        assertNotSame(first, after);
+        assertEquals(200, after[31]);
+
+        s.retain(List.of("sub2"));
+        assertNotSame(after, s.simplify("sub1", store.snapshot(), 32));
+    }
+}
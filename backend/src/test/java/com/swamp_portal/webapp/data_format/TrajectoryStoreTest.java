@@ -0,0 +1,123 @@
+package com.swamp_portal.webapp.data_format;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrajectoryStoreTest {
+    private static final long SEC = 1_000_000_000L;
+    private static final long NOW = 1_700_000_000L * SEC;
+
+    /** Samples at NOW + s seconds for each s, with x = s + dx. */
+    private static TrajectoryStore.Batch batch(double dx, int... seconds) {
+        TrajectoryStore.Batch b = new TrajectoryStore.Batch(seconds.length);
+        for (int s : seconds) b.add(NOW + s * SEC, s + dx, 0, 0);
+        return b;
+    }
+
+    private static double[] xs(TrajectoryStore.View v) {
+        double[] out = new double[v.size()];
+        for (int i = 0; i < out.length; i++) out[i] = v.x(i);
+        return out;
+    }
+
+    @Test
+    void appendKeepsGenerationAndAdvancesSeq() {
+        TrajectoryStore store = new TrajectoryStore();
+        store.merge(batch(0, 1, 2, 3), NOW);
+        TrajectoryStore.View first = store.snapshot();
+
+        store.merge(batch(0, 2, 3, 4, 5), NOW);
+        TrajectoryStore.View second = store.snapshot();
+
+        assertEquals(first.generation(), second.generation());
+        assertEquals(first.firstSeq(), second.firstSeq());
+        assertEquals(first.endSeq() + 2, second.endSeq());
+        assertArrayEquals(new double[] {1, 2, 3, 4, 5}, xs(second), 0);
+        assertArrayEquals(new double[] {1, 2, 3}, xs(first), 0);
+    }
+
+    @Test
+    void identicalResendIsANoOp() {
+        TrajectoryStore store = new TrajectoryStore();
+        store.merge(batch(0, 1, 2, 3), NOW);
+        TrajectoryStore.View before = store.snapshot();
+
+        store.merge(batch(0, 1, 2, 3), NOW);
+        TrajectoryStore.View after = store.snapshot();
+
+        assertEquals(before.generation(), after.generation());
+        assertEquals(before.endSeq(), after.endSeq());
+    }
+
+    @Test
+    void changedOrInsertedSampleRewritesWithFreshSeqs() {
+        TrajectoryStore store = new TrajectoryStore();
+        store.merge(batch(0, 1, 3, 5), NOW);
+        TrajectoryStore.View before = store.snapshot();
+
+        TrajectoryStore.Batch b = batch(0, 2);
+        b.add(NOW + 3 * SEC, 30, 0, 0);
+        store.merge(b, NOW);
+        TrajectoryStore.View after = store.snapshot();
+
+        assertEquals(before.generation() + 1, after.generation());
+        assertEquals(before.endSeq(), after.firstSeq());
+        assertArrayEquals(new double[] {1, 2, 30, 5}, xs(after), 0);
+        assertArrayEquals(new double[] {1, 3, 5}, xs(before), 0);
+    }
+
+    @Test
+    void batchIsSortedAndLastDuplicateWins() {
+        TrajectoryStore store = new TrajectoryStore();
+        TrajectoryStore.Batch b = new TrajectoryStore.Batch(4);
+        b.add(NOW + 3 * SEC, 3, 0, 0);
+        b.add(NOW + SEC, 1, 0, 0);
+        b.add(NOW + 3 * SEC, 33, 0, 0);
+        b.add(NOW + 2 * SEC, 2, 0, 0);
+        store.merge(b, NOW);
+
+        TrajectoryStore.View v = store.snapshot();
+        assertArrayEquals(new double[] {1, 2, 33}, xs(v), 0);
+        assertEquals(NOW + SEC, v.epochNanos(0));
+    }
+
+    @Test
+    void expiresPastSamplesButKeepsNewest() {
+        TrajectoryStore store = new TrajectoryStore();
+        store.merge(batch(0, 1, 2, 3), NOW);
+
+        store.merge(batch(0, 4), NOW + 10 * SEC);
+
+        TrajectoryStore.View v = store.snapshot();
+        assertEquals(1, v.size());
+        assertEquals(4, v.x(0), 0);
+    }
+
+    @Test
+    void replaceBumpsGeneration() {
+        TrajectoryStore store = new TrajectoryStore();
+        store.merge(batch(0, 1, 2), NOW);
+        long gen = store.snapshot().generation();
+
+        store.replace(batch(0.5, 7, 8), NOW);
+
+        TrajectoryStore.View v = store.snapshot();
+        assertEquals(gen + 1, v.generation());
+        assertArrayEquals(new double[] {7.5, 8.5}, xs(v), 0);
+    }
+
+    @Test
+    void keepsOrientationPerSample() {
+        TrajectoryStore store = new TrajectoryStore();
+        TrajectoryStore.Batch b = batch(0, 1);
+        b.add(NOW + 2 * SEC, 2, 0, 0, 0, 0, 0.383, 0.924);
+        store.merge(b, NOW);
+
+        TrajectoryStore.View v = store.snapshot();
+        assertFalse(v.hasOrientation(0));
+        assertTrue(v.hasOrientation(1));
+        assertNull(v.get(0).getOw());
+        assertEquals(0.924, v.get(1).getOw(), 0);
+    }
+}
@@ -0,0 +1,157 @@
+package com.swamp_portal.webapp.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheTest {
+
+    /** In-memory repo; {@link #hold} makes reads wait until the test completes them. */
+    private static final class FakeRepo extends AsyncUserRepo {
+        final Map<String, UserItem> users = new HashMap<>();
+        final List<String> reads = new ArrayList<>();
+        final List<CompletableFuture<UserItem>> held = new ArrayList<>();
+        boolean hold;
+        RuntimeException throwOnGet;
+
+        FakeRepo() {
+            super(null);
+        }
+
+        @Override
+        public CompletableFuture<UserItem> get(String username) {
+            reads.add(username);
+            if (throwOnGet != null) throw throwOnGet;
+            if (!hold) return CompletableFuture.completedFuture(users.get(username));
+            CompletableFuture<UserItem> f = new CompletableFuture<>();
+            held.add(f);
+            return f;
+        }
+
+        @Override
+        public CompletableFuture<Boolean> createUser(String username, String passwordHash) {
+            if (users.containsKey(username)) return CompletableFuture.completedFuture(false);
+            users.put(username, user(username));
+            return CompletableFuture.completedFuture(true);
+        }
+    }
+
+    private static UserItem user(String name) {
+        UserItem u = new UserItem();
+        u.setUsername(name);
+        u.setPasswordHash("hash-" + name);
+        return u;
+    }
+
+    private final FakeRepo repo = new FakeRepo();
+
+    @Test
+    void hitsAreServedFromTheCache() {
+        repo.users.put("alice", user("alice"));
+        UserCache cache = new UserCache(repo, 100, 300, 30);
+
+        assertEquals("alice", cache.get("alice").join().getUsername());
+        assertEquals("alice", cache.get("alice").join().getUsername());
+        assertEquals(List.of("alice"), repo.reads);
+    }
+
+    @Test
+    void unknownNamesAreCachedUntilCreated() {
+        UserCache cache = new UserCache(repo, 100, 300, 30);
+
+        assertNull(cache.get("ghost").join());
+        assertNull(cache.get("ghost").join());
+        assertEquals(1, repo.reads.size());
+
+        assertTrue(cache.createUser("ghost", "h").join());
+        assertEquals("ghost", cache.get("ghost").join().getUsername());
+        assertEquals(2, repo.reads.size());
+    }
+
+    @Test
+    void zeroNegativeTtlDisablesNegativeCaching() {
+        UserCache cache = new UserCache(repo, 100, 300, 0);
+
+        cache.get("ghost").join();
+        cache.get("ghost").join();
+        assertEquals(2, repo.reads.size());
+    }
+
+    @Test
+    void concurrentMissesShareOneRead() {
+        repo.hold = true;
+        UserCache cache = new UserCache(repo, 100, 300, 30);
+
+        CompletableFuture<UserItem> a = cache.get("alice"), b = cache.get("alice");
+        assertSame(a, b);
+        assertEquals(1, repo.reads.size());
+
+        repo.held.getFirst().complete(user("alice"));
+        assertEquals("alice", b.join().getUsername());
+    }
+
+    @Test
+    void readThatRacedAnInvalidationIsNotCached() {
+        repo.hold = true;
+        UserCache cache = new UserCache(repo, 100, 300, 30);
+        CompletableFuture<UserItem> stale = cache.get("alice");
+
+        cache.invalidate("alice"); // e.g. the account was created while the read was in flight
+        repo.held.getFirst().complete(null);
+
+        assertNull(stale.join());
+        repo.hold = false;
+        repo.users.put("alice", user("alice"));
+        assertEquals("alice", cache.get("alice").join().getUsername());
+    }
+
+    @Test
+    void failedReadsAreNotCached() {
+        repo.hold = true;
+        UserCache cache = new UserCache(repo, 100, 300, 30);
+        CompletableFuture<UserItem> failed = cache.get("alice");
+        repo.held.getFirst().completeExceptionally(new IllegalStateException("throttled"));
+
+        assertThrows(CompletionException.class, failed::join);
+        CompletableFuture<UserItem> retry = cache.get("alice");
+        assertNotSame(failed, retry);
+        assertEquals(2, repo.reads.size());
+    }
+
+    @Test
+    void readThatThrowsFailsTheLoadAndIsRetried() {
+        repo.users.put("alice", user("alice"));
+        repo.throwOnGet = new IllegalStateException("client closed");
+        UserCache cache = new UserCache(repo, 100, 300, 30);
+
+        CompletionException e = assertThrows(CompletionException.class, cache.get("alice")::join);
+        assertSame(repo.throwOnGet, e.getCause());
+
+        repo.throwOnGet = null;
+        assertEquals("alice", cache.get("alice").join().getUsername());
+        assertEquals(2, repo.reads.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        for (String n : List.of("a", "b", "c")) repo.users.put(n, user(n));
+        UserCache cache = new UserCache(repo, 2, 300, 30);
+
+        cache.get("a").join();
+        cache.get("b").join();
+        cache.get("a").join(); // a is now the most recently used
+        cache.get("c").join(); // evicts b
+        repo.reads.clear();
+
+        cache.get("a").join();
+        cache.get("b").join();
+        assertEquals(List.of("b"), repo.reads);
+    }
+}
@@ -0,0 +1,118 @@
+package com.swamp_portal.webapp.history;
+
+import com.swamp_portal.webapp.data_format.PointSeries;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionHistoryTest {
+    private static final double DAY_START = 1_700_006_400; // 2023-11-15T00:00:00Z
+
+    @TempDir
+    Path dir;
+
+    private final List<PositionHistory> opened = new ArrayList<>();
+
+    private PositionHistory open() {
+        PositionHistory h = new PositionHistory(true, dir.toString(), 36500);
+        opened.add(h);
+        return h;
+    }
+
+    @AfterEach
+    void close() {
+        opened.forEach(PositionHistory::shutdown);
+    }
+
+    /** {@code n} samples every {@code step} seconds from {@code start}, with x = sample number. */
+    private static PointSeries series(double start, double step, int from, int n) {
+        PointSeries s = new PointSeries(n);
+        for (int i = from; i < from + n; i++) s.add(start + i * step, i, 0, 0);
+        return s;
+    }
+
+    private static long nanos(double seconds) {
+        return Math.round(seconds * 1e9);
+    }
+
+    private static List<Integer> query(PositionHistory h, String role, double from, double to, double step) throws IOException {
+        List<Integer> out = new ArrayList<>();
+        h.query(role, nanos(from), nanos(to), nanos(step), (t, x, y, z) -> out.add((int) x));
+        return out;
+    }
+
+    @Test
+    void seeksToAnyInstantAcrossIndexStrides() throws IOException {
+        PositionHistory h = open();
+        int n = PositionHistory.INDEX_STRIDE * 10 + 17;
+        h.append("sub1", series(DAY_START, 1, 0, n));
+
+        for (int from : new int[] {0, 1, 255, 256, 257, 1000, n - 1}) {
+            List<Integer> got = query(h, "sub1", DAY_START + from - 0.5, DAY_START + from + 3.5, 0);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = from; i <= Math.min(n - 1, from + 3); i++) expected.add(i);
+            assertEquals(expected, got, "from " + from);
+        }
+        assertEquals(List.of(), query(h, "sub1", DAY_START - 100, DAY_START - 1, 0));
+        assertEquals(List.of(), query(h, "other", DAY_START, DAY_START + 10, 0));
+    }
+
+    @Test
+    void indexKeepsUpWithAppendsAfterTheFirstQuery() throws IOException {
+        PositionHistory h = open();
+        h.append("sub1", series(DAY_START, 1, 0, 300));
+        assertEquals(List.of(299), query(h, "sub1", DAY_START + 299, DAY_START + 299, 0));
+
+        h.append("sub1", series(DAY_START, 1, 300, 600));
+
+        assertEquals(List.of(800, 801), query(h, "sub1", DAY_START + 800, DAY_START + 801, 0));
+    }
+
+    @Test
+    void skipsOverlappingSamplesAndThinsByStep() throws IOException {
+        PositionHistory h = open();
+        h.append("sub1", series(DAY_START, 1, 0, 10));
+        h.append("sub1", series(DAY_START, 1, 5, 10)); // 5..9 again, then 10..14
+
+        assertEquals(15, query(h, "sub1", DAY_START, DAY_START + 100, 0).size());
+        assertEquals(List.of(0, 4, 8, 12), query(h, "sub1", DAY_START, DAY_START + 100, 4));
+    }
+
+    @Test
+    void rangesSpanUtcDaysAndSurviveReopen() throws IOException {
+        PositionHistory h = open();
+        h.append("sub1", series(DAY_START - 5, 1, 0, 10)); // 5 s before and after midnight
+        h.shutdown();
+
+        PositionHistory reopened = open();
+        reopened.append("sub1", series(DAY_START - 5, 1, 8, 4)); // 8, 9 already stored
+        assertEquals(List.of(3, 4, 5, 6, 7, 8, 9, 10, 11), query(reopened, "sub1", DAY_START - 2, DAY_START + 100, 0));
+    }
+
+    @Test
+    void rolesThatSanitizeAlikeKeepSeparateFiles() throws IOException {
+        PositionHistory h = open();
+        h.append("sub_1", series(DAY_START, 1, 0, 3));
+        h.append("sub 1", series(DAY_START, 1, 100, 3));
+
+        assertEquals(List.of(0, 1, 2), query(h, "sub_1", DAY_START - 1, DAY_START + 1000, 0));
+        assertEquals(List.of(100, 101, 102), query(h, "sub 1", DAY_START - 1, DAY_START + 1000, 0));
+        assertEquals("sub_1", PositionHistory.fileName("sub_1"));
+        assertNotEquals(PositionHistory.fileName("sub_1"), PositionHistory.fileName("sub 1"));
+        assertNotEquals(PositionHistory.fileName("sub/1"), PositionHistory.fileName("sub 1"));
+        assertFalse(PositionHistory.fileName("..").startsWith("."));
+        assertFalse(PositionHistory.fileName("").isEmpty());
+    }
+
+    @Test
+    void enablingWithoutDirFails() {
+        assertThrows(IllegalStateException.class, () -> new PositionHistory(true, "", 30));
+    }
+}
@@ -0,0 +1,107 @@
+package com.swamp_portal.webapp.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swamp_portal.webapp.data_format.Report;
+import com.swamp_portal.webapp.data_format.ReportAggregationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregationCheckpointTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    private static ReportAggregationService service() {
+        return new ReportAggregationService(new SimpleMeterRegistry(), 60, 5, 2);
+    }
+
+    private AggregationCheckpoint checkpoint() {
+        return new AggregationCheckpoint(true, dir.toString(), 3600);
+    }
+
+    /** Plan along x from {@code start}, with history samples 0.5 m off it at the first three plan times. */
+    private Report report(String role, double start, int points) throws Exception {
+        StringBuilder plan = new StringBuilder(), hist = new StringBuilder();
+        for (int i = 0; i < points; i++) {
+            if (i > 0) plan.append(',');
+            plan.append(String.format(Locale.ROOT, "{\"t\":%.3f,\"x\":%d,\"y\":0,\"z\":-2}", start + i, i));
+            if (i < 3) {
+                if (i > 0) hist.append(',');
+                hist.append(String.format(Locale.ROOT, "{\"t\":%.3f,\"x\":%d,\"y\":0.5,\"z\":-2}", start + i, i));
+            }
+        }
+        String json = "{\"report_id\":1,\"identity_role\":\"" + role + "\",\"snapshot_sent_time\":" + (start + 3)
+                + ",\"sub0_role\":\"" + role + "\",\"sub0_plan\":[" + plan + "],\"sub0_history\":[" + hist
+                + "],\"report_stats\":{\"" + role + "\":4}}";
+        return mapper.readValue(json, Report.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> firstSub(Map<String, Object> data) {
+        return ((List<Map<String, Object>>) data.get("Subs")).getFirst();
+    }
+
+    private ReportAggregationService filled() throws Exception {
+        ReportAggregationService svc = service();
+        double start = System.currentTimeMillis() / 1000.0 + 600;
+        for (Report r : List.of(report("sub1", start, 20), report("sub2", start + 5, 8))) {
+            svc.ingestReport(r);
+            svc.applyAvgDeviationFromReport(r);
+        }
+        return svc;
+    }
+
+    @Test
+    void restoresWhatWasCaptured() throws Exception {
+        ReportAggregationService svc = filled();
+        long before = System.currentTimeMillis();
+        checkpoint().captureNow(svc);
+        long after = System.currentTimeMillis();
+
+        ReportAggregationService restored = service();
+        AggregationCheckpoint.Loaded loaded = checkpoint().load(restored);
+
+        assertNotNull(loaded);
+        assertEquals(2, loaded.roles());
+        assertTrue(loaded.markMillis() >= before && loaded.markMillis() <= after);
+        Map<String, Object> expected = svc.buildStreamdataWithAvg();
+        assertEquals(0.5, (double) firstSub(expected).get("avg_deviation"), 1e-9);
+        assertEquals(expected, restored.buildStreamdataWithAvg());
+    }
+
+    @Test
+    void damagedFileIsIgnored() throws Exception {
+        checkpoint().captureNow(filled());
+        Path file = dir.resolve("aggregation.snap");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x40;
+        Files.write(file, bytes);
+
+        ReportAggregationService svc = service();
+        assertNull(checkpoint().load(svc));
+        assertEquals(0, svc.exportSnapshot().roles());
+    }
+
+    @Test
+    void missingFileLoadsNothing() {
+        assertNull(checkpoint().load(service()));
+    }
+
+    @Test
+    void enablingWithoutDirFails() {
+        assertThrows(IllegalStateException.class, () -> new AggregationCheckpoint(true, " ", 30));
+        AggregationCheckpoint off = new AggregationCheckpoint(false, "", 30);
+        assertFalse(off.enabled());
+        assertNull(off.load(service()));
+    }
+}
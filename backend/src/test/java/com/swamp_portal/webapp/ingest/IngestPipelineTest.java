@@ -0,0 +1,94 @@
+package com.swamp_portal.webapp.ingest;
+
+import com.swamp_portal.webapp.cluster.LocalStreamBus;
+import com.swamp_portal.webapp.data_format.ReportAggregationService;
+import com.swamp_portal.webapp.history.PositionHistory;
+import com.swamp_portal.webapp.stream.BroadcastScheduler;
+import com.swamp_portal.webapp.telemetry.TelemetryLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestPipelineTest {
+    @TempDir
+    Path dir;
+
+    private IngestPipeline pipeline(AggregationCheckpoint checkpoint, int capacity) {
+        BroadcastScheduler scheduler = new BroadcastScheduler(null, 0) {
+            @Override public void markDirty() {}
+            @Override public void flushNow() {}
+        };
+        return new IngestPipeline(new ReportAggregationService(new SimpleMeterRegistry(), 60, 5, 2), scheduler,
+                new TelemetryLog(false, dir.resolve("telemetry").toString(), 1 << 20, 1, 200),
+                new PositionHistory(false, dir.resolve("history").toString(), 1),
+                new LocalStreamBus("ingest-test-" + System.nanoTime()), checkpoint, new SimpleMeterRegistry(), capacity, 0, 10);
+    }
+
+    @Test
+    void stopAppliesEverythingAcceptedBeforeTheCheckpoint() throws Exception {
+        AggregationCheckpoint checkpoint = new AggregationCheckpoint(true, dir.resolve("checkpoint").toString(), 3600);
+        IngestPipeline p = pipeline(checkpoint, 256);
+        p.start();
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger applied = new AtomicInteger();
+        assertTrue(p.submit(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                fail("worker interrupted");
+            }
+        }));
+        for (int i = 0; i < 100; i++) assertTrue(p.submit(applied::incrementAndGet));
+
+        gate.countDown();
+        p.stop();
+
+        assertEquals(100, applied.get());
+        assertFalse(p.isRunning());
+        assertTrue(Files.exists(dir.resolve("checkpoint").resolve("aggregation.snap")));
+    }
+
+    @Test
+    void refusesWorkOnceStopped() {
+        IngestPipeline p = pipeline(new AggregationCheckpoint(false, dir.toString(), 30), 4);
+        assertFalse(p.submit(() -> {}), "not started yet");
+        p.start();
+        assertTrue(p.isRunning());
+
+        p.stop();
+
+        assertFalse(p.submit(() -> {}));
+        assertEquals(0, p.stats().depth());
+    }
+
+    @Test
+    void fullQueueIsReportedNotBlocked() throws Exception {
+        IngestPipeline p = pipeline(new AggregationCheckpoint(false, dir.toString(), 30), 2);
+        p.start();
+        CountDownLatch started = new CountDownLatch(1), gate = new CountDownLatch(1);
+        p.submit(() -> {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(p.submit(() -> {}));
+        assertTrue(p.submit(() -> {}));
+
+        assertFalse(p.submit(() -> {}));
+        assertEquals(1, p.stats().rejected());
+        gate.countDown();
+        p.stop();
+        assertEquals(4, p.stats().processed());
+    }
+}
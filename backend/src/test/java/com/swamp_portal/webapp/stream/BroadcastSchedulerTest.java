@@ -0,0 +1,70 @@
+package com.swamp_portal.webapp.stream;
+
+import com.swamp_portal.webapp.cluster.LocalStreamBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BroadcastSchedulerTest {
+    private final AtomicInteger publishes = new AtomicInteger();
+    private final List<BroadcastScheduler> schedulers = new ArrayList<>();
+    private volatile CountDownLatch published = new CountDownLatch(1);
+
+    /** Counts publishes instead of capturing and encoding state. */
+    private final StreamPublisher publisher = new StreamPublisher(null, null, null, null,
+            new LocalStreamBus("broadcast-test"), new SimpleMeterRegistry(), 1, 1, 0) {
+        @Override
+        public synchronized void publish() {
+            publishes.incrementAndGet();
+            published.countDown();
+        }
+    };
+
+    private BroadcastScheduler scheduler(double tickHz) {
+        BroadcastScheduler s = new BroadcastScheduler(publisher, tickHz);
+        schedulers.add(s);
+        return s;
+    }
+
+    @AfterEach
+    void stop() {
+        schedulers.forEach(BroadcastScheduler::shutdown);
+    }
+
+    @Test
+    void burstOfChangesGoesOutAsOneTick() throws Exception {
+        BroadcastScheduler s = scheduler(2);
+        for (int i = 0; i < 1000; i++) s.markDirty();
+
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+        Thread.sleep(1200); // two more ticks with nothing new
+        assertEquals(1, publishes.get());
+    }
+
+    @Test
+    void flushNowDoesNotWaitForTheTick() throws Exception {
+        BroadcastScheduler s = scheduler(0.01); // next tick is 100 s away
+        s.flushNow();
+
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+        assertEquals(1, publishes.get());
+    }
+
+    @Test
+    void zeroTickRatePublishesInline() {
+        BroadcastScheduler s = scheduler(0);
+        s.markDirty();
+        s.markDirty();
+        s.flushNow();
+
+        assertEquals(3, publishes.get());
+    }
+}
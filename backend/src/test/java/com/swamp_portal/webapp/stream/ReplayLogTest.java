@@ -0,0 +1,84 @@
+package com.swamp_portal.webapp.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayLogTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private SseFrame delta(long version) {
+        return SseFrame.delta(mapper, String.valueOf(version), "delta " + version);
+    }
+
+    private static List<String> ids(List<SseFrame> frames) {
+        return frames.stream().map(SseFrame::id).toList();
+    }
+
+    private ReplayLog logOf(int maxFrames, long maxBytes, long from, long to) {
+        ReplayLog log = new ReplayLog(maxFrames, maxBytes);
+        for (long v = from; v <= to; v++) log.append(v, delta(v));
+        return log;
+    }
+
+    @Test
+    void returnsFramesAfterLastSeen() {
+        ReplayLog log = logOf(10, Long.MAX_VALUE, 1, 5);
+
+        assertEquals(List.of("3", "4", "5"), ids(log.since(2, 5)));
+        assertEquals(List.of("1", "2", "3", "4", "5"), ids(log.since(0, 5)));
+    }
+
+    @Test
+    void upToDateClientGetsNothing() {
+        ReplayLog log = logOf(10, Long.MAX_VALUE, 1, 5);
+
+        assertEquals(List.of(), log.since(5, 5));
+    }
+
+    @Test
+    void clientAheadOfServerNeedsSnapshot() {
+        ReplayLog log = logOf(10, Long.MAX_VALUE, 1, 5);
+
+        assertNull(log.since(7, 5));
+    }
+
+    @Test
+    void gapBeforeOldestFrameNeedsSnapshot() {
+        ReplayLog log = logOf(3, Long.MAX_VALUE, 1, 5);
+
+        assertNull(log.since(1, 5));
+        assertEquals(List.of("3", "4", "5"), ids(log.since(2, 5)));
+    }
+
+    @Test
+    void logBehindCurrentVersionNeedsSnapshot() {
+        ReplayLog log = logOf(10, Long.MAX_VALUE, 1, 5);
+
+        assertNull(log.since(3, 6));
+    }
+
+    @Test
+    void byteBudgetKeepsNewestFrame() {
+        long frameBytes = delta(1).bytes().length;
+        ReplayLog log = logOf(10, frameBytes * 2, 1, 5);
+
+        assertNull(log.since(2, 5));
+        assertEquals(List.of("4", "5"), ids(log.since(3, 5)));
+
+        ReplayLog tiny = logOf(10, 1, 1, 3);
+        assertEquals(List.of("3"), ids(tiny.since(2, 3)));
+    }
+
+    @Test
+    void clearAndDisabledLogsReplayNothing() {
+        ReplayLog log = logOf(10, Long.MAX_VALUE, 1, 5);
+        log.clear();
+        assertNull(log.since(4, 5));
+
+        assertNull(logOf(0, Long.MAX_VALUE, 1, 5).since(4, 5));
+    }
+}
@@ -0,0 +1,69 @@
+package com.swamp_portal.webapp.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SseFrameTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** Keeps what would have been written to the response. */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<Object> written = new ArrayList<>();
+
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            items.forEach(item -> written.add(item.getData()));
+        }
+    }
+
+    private static String text(SseFrame frame) {
+        return new String(frame.bytes(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void encodesEventIdAndJsonData() {
+        SseFrame frame = SseFrame.of(mapper, "message", "42", Map.of("mode", "survey"));
+
+        assertEquals("42", frame.id());
+        assertEquals("event:message\nid:42\ndata:{\"mode\":\"survey\"}\n\n", text(frame));
+    }
+
+    @Test
+    void textGoesOutVerbatimWithOneDataFieldPerLine() {
+        assertEquals("data:first\ndata:second\n\n", text(SseFrame.of(mapper, null, null, "first\nsecond")));
+        assertEquals("event:ping\ndata:\n\n", text(SseFrame.of(mapper, "ping", null, null)));
+    }
+
+    @Test
+    void everySubscriberGetsTheBytesEncodedOnce() throws IOException {
+        AtomicInteger encodes = new AtomicInteger();
+        ObjectMapper counting = new ObjectMapper() {
+            @Override
+            public String writeValueAsString(Object value) throws JsonProcessingException {
+                encodes.incrementAndGet();
+                return super.writeValueAsString(value);
+            }
+        };
+        SseFrame frame = SseFrame.of(counting, "message", "7", List.of(1, 2, 3));
+        RecordingEmitter a = new RecordingEmitter(), b = new RecordingEmitter();
+
+        frame.sendTo(a);
+        frame.sendTo(b);
+
+        assertEquals(1, encodes.get());
+        assertSame(frame.bytes(), a.written.getFirst());
+        assertSame(frame.bytes(), b.written.getFirst());
+    }
+}
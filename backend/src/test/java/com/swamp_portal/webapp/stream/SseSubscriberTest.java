@@ -0,0 +1,106 @@
+package com.swamp_portal.webapp.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SseSubscriberTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private SseSubscriber subscriber(int capacity) {
+        return new SseSubscriber(1, new SseEmitter(), StreamMode.DELTA, StreamVariant.full(StreamFormat.JSON), capacity);
+    }
+
+    private SseFrame full(int id) {
+        return SseFrame.of(mapper, "message", String.valueOf(id), "state " + id);
+    }
+
+    private SseFrame delta(int id) {
+        return SseFrame.delta(mapper, String.valueOf(id), "delta " + id);
+    }
+
+    private static List<String> drain(SseSubscriber s) {
+        List<String> ids = new ArrayList<>();
+        assertTrue(s.startDrain());
+        for (SseFrame f; (f = s.next()) != null; ) ids.add(f.id());
+        return ids;
+    }
+
+    @Test
+    void queuesUpToCapacity() {
+        SseSubscriber s = subscriber(3);
+        for (int i = 1; i <= 3; i++) assertEquals(SseSubscriber.Offer.QUEUED, s.offer(delta(i), 2));
+
+        assertEquals(3, s.queued());
+        assertEquals(List.of("1", "2", "3"), drain(s));
+    }
+
+    @Test
+    void fullFrameSupersedesQueueWhenFull() {
+        SseSubscriber s = subscriber(2);
+        s.offer(delta(1), 2);
+        s.offer(delta(2), 2);
+
+        assertEquals(SseSubscriber.Offer.COALESCED, s.offer(full(3), 2));
+        assertEquals(List.of("3"), drain(s));
+    }
+
+    @Test
+    void deltaOnFullQueueAsksForResync() {
+        SseSubscriber s = subscriber(2);
+        s.offer(delta(1), 2);
+        s.offer(delta(2), 2);
+
+        assertEquals(SseSubscriber.Offer.NEEDS_RESYNC, s.offer(delta(3), 2));
+        assertEquals(0, s.queued());
+        s.resync(full(3));
+        assertEquals(List.of("3"), drain(s));
+    }
+
+    @Test
+    void overflowsInARowGiveUp() {
+        SseSubscriber s = subscriber(1);
+        s.offer(full(1), 1);
+        assertEquals(SseSubscriber.Offer.COALESCED, s.offer(full(2), 1));
+        assertEquals(SseSubscriber.Offer.OVERFLOWED, s.offer(full(3), 1));
+    }
+
+    @Test
+    void drainingResetsOverflowCount() {
+        SseSubscriber s = subscriber(1);
+        s.offer(full(1), 1);
+        s.offer(full(2), 1);
+        drain(s);
+
+        s.offer(full(3), 1);
+        assertEquals(SseSubscriber.Offer.COALESCED, s.offer(full(4), 1));
+    }
+
+    @Test
+    void oneDrainAtATime() {
+        SseSubscriber s = subscriber(4);
+        s.offer(full(1), 1);
+        assertTrue(s.startDrain());
+        assertFalse(s.startDrain());
+        assertNotNull(s.next());
+        assertNull(s.next());
+        assertFalse(s.startDrain());
+    }
+
+    @Test
+    void closeDropsQueueAndIgnoresLaterFrames() {
+        SseSubscriber s = subscriber(4);
+        s.offer(full(1), 1);
+
+        assertTrue(s.close());
+        assertFalse(s.close());
+        s.offer(full(2), 1);
+        assertEquals(0, s.queued());
+        assertFalse(s.startDrain());
+    }
+}
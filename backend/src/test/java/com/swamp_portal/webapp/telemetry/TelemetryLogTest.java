@@ -0,0 +1,112 @@
+package com.swamp_portal.webapp.telemetry;
+
+import com.swamp_portal.webapp.data_format.Report;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryLogTest {
+    private static final int SEGMENT = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private TelemetryLog open(int maxSegments) {
+        return new TelemetryLog(true, dir.toString(), SEGMENT, maxSegments, 60_000);
+    }
+
+    private static Report report(long id) {
+        Report r = new Report();
+        r.setReportId(id);
+        r.setIdentityRole("sub" + id);
+        return r;
+    }
+
+    private static List<Long> replayIds(TelemetryLog log, long since) {
+        List<Long> ids = new ArrayList<>();
+        log.replay(since, e -> ids.add(((Report) e.value()).getReportId()));
+        return ids;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    @Test
+    void replaysWhatWasAppendedAcrossReopen() {
+        TelemetryLog log = open(4);
+        for (long i = 1; i <= 3; i++) log.append(report(i));
+        log.shutdown();
+
+        TelemetryLog reopened = open(4);
+        reopened.append(report(4));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), replayIds(reopened, 0));
+        assertEquals(List.of(), replayIds(reopened, System.currentTimeMillis() + 60_000));
+        reopened.shutdown();
+    }
+
+    @Test
+    void tornTailIsCutOffAndOverwrittenOnReopen() throws IOException {
+        TelemetryLog log = open(4);
+        for (long i = 1; i <= 3; i++) log.append(report(i));
+        log.shutdown();
+
+        // damage the last record's payload, as a crash mid-append would
+        Path seg = segments().getFirst();
+        try (FileChannel ch = FileChannel.open(seg, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+            int at = 16, last = at;
+            for (int len; (len = buf.getInt(at)) > 0; at += 17 + len) last = at;
+            int lastByte = last + 17 + buf.getInt(last) - 1;
+            buf.put(lastByte, (byte) ~buf.get(lastByte));
+            buf.force();
+        }
+
+        TelemetryLog reopened = open(4);
+        assertEquals(List.of(1L, 2L), replayIds(reopened, 0));
+        reopened.append(report(5));
+        assertEquals(List.of(1L, 2L, 5L), replayIds(reopened, 0));
+        reopened.shutdown();
+    }
+
+    @Test
+    void rollsSegmentsAndKeepsAtMostMaxSegments() throws IOException {
+        TelemetryLog log = open(2);
+        Report big = report(0);
+        big.setReportStats(new java.util.HashMap<>());
+        for (int i = 0; i < 2000; i++) big.getReportStats().put("role-" + i, i);
+        for (long i = 1; i <= 20; i++) {
+            big.setReportId(i);
+            log.append(big);
+        }
+
+        assertEquals(2, segments().size());
+        List<Long> ids = replayIds(log, 0);
+        assertFalse(ids.isEmpty());
+        assertEquals(20, (long) ids.getLast());
+        assertTrue(ids.getFirst() > 1, "oldest segments were deleted");
+        log.shutdown();
+    }
+
+    @Test
+    void enablingWithoutDirFails() {
+        assertThrows(IllegalStateException.class, () -> new TelemetryLog(true, " ", SEGMENT, 2, 200));
+        TelemetryLog off = new TelemetryLog(false, "", SEGMENT, 2, 200);
+        off.append(report(1));
+        assertEquals(0, off.replay(0, e -> fail("disabled log replayed")));
+    }
+}
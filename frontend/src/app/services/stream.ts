@@ -27,6 +27,8 @@ export interface StreamData {
             //     orientation: {x: number; y: number; z: number; w: number};
             // }
             avg_deviation: number; // past 1 minute
+            max_deviation?: number; // past 1 minute
+            p95_deviation?: number; // past 1 minute
         }[];
     Events: {
         time: number;
@@ -38,11 +40,46 @@ export interface StreamData {
 }
 
 
+// travel_plan as sent with format=packed
+interface PackedTravelPlan {
+    t0: number;          // epoch millis of the first point
+    dt: number[];        // millis since the previous point
+    xyz: number[];       // x, y, z per point
+    q?: (number | null)[]; // x, y, z, w per point, null where missing
+}
+
+// Expands packed travel plans in place into the regular StreamData shape
+function unpackStreamData(data: any): StreamData {
+    if (!data || !Array.isArray(data.Subs)) return data;
+    for (const sub of data.Subs) {
+        const tp = sub.travel_plan;
+        if (!tp || Array.isArray(tp)) continue;
+        const packed = tp as PackedTravelPlan;
+        const points: StreamData['Subs'][number]['travel_plan'] = [];
+        let t = packed.t0;
+        for (let i = 0; i < packed.dt.length; i++) {
+            t += packed.dt[i];
+            const point: any = {
+                timestamp: t,
+                position: { x: packed.xyz[3 * i], y: packed.xyz[3 * i + 1], z: packed.xyz[3 * i + 2] },
+            };
+            if (packed.q && packed.q[4 * i] != null) {
+                point.orientation = { x: packed.q[4 * i], y: packed.q[4 * i + 1], z: packed.q[4 * i + 2], w: packed.q[4 * i + 3] };
+            }
+            points.push(point);
+        }
+        sub.travel_plan = points;
+    }
+    return data;
+}
+
 @Injectable({
   providedIn: 'root',
 })
 export class StreamService {
   private abortController?: AbortController;
+  private lastEventId?: string; // sent back on reconnect so the server only replays what we missed
+  private pendingEventId?: string; // id of the event whose data line has not arrived yet
   private streamDataSubject = new BehaviorSubject<StreamData | null>(null);
   private connectionStateSubject = new BehaviorSubject<'disconnected' | 'connecting' | 'connected' | 'error'>('disconnected');
 
@@ -58,9 +95,11 @@ export class StreamService {
     this.connectionStateSubject.next('connecting');
 
     try {
-      const response = await fetch('/api/stream', {
+      // packed: travel plans arrive as columns, about half the JSON size (expanded in unpackStreamData)
+      const response = await fetch('/api/stream?format=packed', {
         method: 'GET',
         credentials: 'include', // Include cookies for authentication
+        headers: this.lastEventId ? { 'Last-Event-ID': this.lastEventId } : {},
         signal: this.abortController.signal,
       });
 
@@ -120,21 +159,27 @@ export class StreamService {
     // Handle SSE data events
     if (line.startsWith('data:')) {
       const jsonData = line.substring(5); // Remove "data:" prefix
+      const eventId = this.pendingEventId;
+      this.pendingEventId = undefined;
 
       this.zone.run(() => {
         try {
           if (jsonData.trim() === 'null' || jsonData.trim() === '' || jsonData.trim() === 'undefined') {
             this.streamDataSubject.next(null);
           } else {
-            const data: StreamData = JSON.parse(jsonData);
+            const data: StreamData = unpackStreamData(JSON.parse(jsonData));
             this.streamDataSubject.next(data);
+            if (eventId) this.lastEventId = eventId;
           }
         } catch (e) {
           console.error('Error parsing stream data:', e);
         }
       });
     }
-    // Silently handle other SSE fields (event:, id:, retry:, comments)
+    else if (line.startsWith('id:')) {
+      this.pendingEventId = line.substring(3).trim();
+    }
+    // Silently handle other SSE fields (event:, retry:, comments)
   }
 
   disconnect() {
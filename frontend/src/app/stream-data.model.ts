@@ -16,6 +16,8 @@ export interface StreamData {
             //     orientation: {x: number; y: number; z: number; w: number};
             // }
             avg_deviation: number; // past 1 minute
+            max_deviation?: number; // past 1 minute
+            p95_deviation?: number; // past 1 minute
         }[];
     Events: {
         time: number;